@@ -0,0 +1,163 @@
+package com.ydy.api.es.bench;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * ɻ׼õǶĵʹʵ䣬̶ӱ֤ÿͬ
+ * levelĵiֶΪ"f{level}_{i}"i%3==0ΪǶ׶i%3==1Ϊ飬Ϊַ
+ */
+public class DocGenerator {
+    private final int depth;
+    private final int width;
+    private final int listLength;
+    private final Random random = new Random(42);
+
+    /**
+     * @param depth Ƕײ
+     * @param width ÿֶ
+     * @param listLength ĳ
+     */
+    public DocGenerator(int depth, int width, int listLength) {
+        this.depth = depth;
+        this.width = width;
+        this.listLength = listLength;
+    }
+
+    /**
+     * @return һǶĵ
+     */
+    public Map<String, Object> doc() {
+        return object(0);
+    }
+
+    private Map<String, Object> object(int level) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < width; i++) {
+            map.put(field(level, i), value(level, i));
+        }
+        return map;
+    }
+
+    private Object value(int level, int i) {
+        boolean leaf = level == depth - 1;
+        if (!leaf && i % 3 == 0) {
+            return object(level + 1);
+        }
+        if (i % 3 == 1) {
+            List<Object> list = new ArrayList<>();
+            for (int j = 0; j < listLength; j++) {
+                list.add(leaf ? word() : object(level + 1));
+            }
+            return list;
+        }
+        return word();
+    }
+
+    private String word() {
+        return "v" + random.nextInt(100000);
+    }
+
+    /**
+     * @return leveliֶεֶ
+     */
+    public static String field(int level, int i) {
+        return "f" + level + "_" + i;
+    }
+
+    /**
+     * ÿ_sourceΪһǶĵ
+     * @param hits 
+     * @return Ⱥ
+     */
+    public SearchResponse response(int hits) throws IOException {
+        List<BytesReference> sources = new ArrayList<>();
+        for (int i = 0; i < hits; i++) {
+            sources.add(XContentFactory.jsonBuilder().map(doc()).bytes());
+        }
+        return response(sources);
+    }
+
+    /**
+     * л_sourceÿεõĽ½_source
+     * @param sources ÿ_source
+     * @return Ⱥ
+     */
+    public static SearchResponse response(List<BytesReference> sources) {
+        InternalSearchHit[] hits = new InternalSearchHit[sources.size()];
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = new InternalSearchHit(i, String.valueOf(i), new Text("doc"),
+                    Collections.<String, SearchHitField>emptyMap());
+            hits[i].sourceRef(new BytesArray(sources.get(i).toBytes()));
+            hits[i].score(hits.length - i);
+        }
+        InternalSearchHits searchHits = new InternalSearchHits(hits, hits.length, hits.length);
+        InternalSearchResponse internal = new InternalSearchResponse(searchHits, null, null, null, false, null);
+        return new SearchResponse(internal, null, 1, 1, 1, ShardSearchFailure.EMPTY_ARRAY);
+    }
+
+    /**
+     * ͬļkΪ"ֶ s{k} s{k}_a"ֶѭȡĵеֶ
+     * @param size ͬ
+     * @return ʱļ˳ʱɾ
+     */
+    public File synonyms(int size) throws IOException {
+        File file = File.createTempFile("synonyms", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            for (int k = 0; k < size; k++) {
+                writer.println(field(k % depth, k / depth % width) + " s" + k + " s" + k + "_a");
+            }
+        }
+        return file;
+    }
+
+    /**
+     * ɲشֶļÿһֶβش
+     * @return ʱļ˳ʱɾ
+     */
+    public File skips() throws IOException {
+        File file = File.createTempFile("skips", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            for (int level = 0; level < depth; level++) {
+                writer.println(field(level, width - 1));
+            }
+        }
+        return file;
+    }
+
+    /**
+     * ģķִʣֶͬʡڵĴ
+     * @param dictionarySize ͬ
+     * @return ִʽ
+     */
+    public List<String> keywords(int dictionarySize) {
+        List<String> keywords = new ArrayList<>();
+        keywords.add(field(depth - 1, 2));
+        keywords.add(field(0, 1));
+        keywords.add("s" + dictionarySize / 2);
+        keywords.add("s" + (dictionarySize - 1) + "_a");
+        keywords.add("missing");
+        keywords.add("v1");
+        return keywords;
+    }
+}
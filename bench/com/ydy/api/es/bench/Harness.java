@@ -0,0 +1,129 @@
+package com.ydy.api.es.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * ̻߳׼ԿܣʱѭִУÿÿβֽ
+ * ֽHotSpot̷߳JMHgc profilerеgc.alloc.rate.normͬ
+ */
+public class Harness {
+    /**
+     * һ
+     */
+    public interface Benchmark {
+        /**
+         * @return sinkֹJIT
+         */
+        Object run() throws Exception;
+    }
+
+    private static final class Entry {
+        final String name;
+        final Benchmark benchmark;
+
+        Entry(String name, Benchmark benchmark) {
+            this.name = name;
+            this.benchmark = benchmark;
+        }
+    }
+
+    // дvolatileֶΣʹJITɼᱻ
+    private static volatile Object sink;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+
+    /**
+     * @param warmupIterations Ԥ
+     * @param iterations 
+     * @param iterationMillis ÿֵʱλ
+     */
+    public Harness(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1000000L;
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * עһ
+     * @param name 
+     * @param benchmark 
+     */
+    public void add(String name, Benchmark benchmark) {
+        entries.add(new Entry(name, benchmark));
+    }
+
+    /**
+     * ƥfilterĲ׼
+     * @param filter Ƶʽnullʾȫ
+     */
+    public void run(String filter) throws Exception {
+        Pattern pattern = filter == null ? null : Pattern.compile(filter);
+        System.out.println(String.format("%-32s %14s %12s %14s %12s", "Benchmark", "ops/s", "error",
+                "B/op", "MB/s alloc"));
+        for (Entry entry : entries) {
+            if (pattern != null && !pattern.matcher(entry.name).find()) continue;
+            for (int i = 0; i < warmupIterations; i++) {
+                iteration(entry.benchmark);
+            }
+            double[] opsPerSecond = new double[iterations];
+            double bytesPerOp = 0;
+            for (int i = 0; i < iterations; i++) {
+                double[] result = iteration(entry.benchmark);
+                opsPerSecond[i] = result[0];
+                bytesPerOp += result[1] / iterations;
+            }
+            double mean = mean(opsPerSecond);
+            System.out.println(String.format("%-32s %14.1f %12.1f %14.1f %12.1f", entry.name, mean,
+                    error(opsPerSecond, mean), bytesPerOp, mean * bytesPerOp / (1024 * 1024)));
+        }
+    }
+
+    /**
+     * һ
+     * @return {ÿ, ÿβֽ}
+     */
+    private double[] iteration(Benchmark benchmark) throws Exception {
+        long thread = Thread.currentThread().getId();
+        long ops = 0;
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            // ÿ64ٶʱ䣬System.nanoTime()Ŀ
+            for (int i = 0; i < 64; i++) {
+                sink = benchmark.run();
+            }
+            ops += 64;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        return new double[]{ops * 1e9 / elapsed, (double) bytes / ops};
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) sum += v;
+        return sum / values.length;
+    }
+
+    /**
+     * @return 99.9%İֲ̬
+     */
+    private static double error(double[] values, double mean) {
+        if (values.length < 2) return Double.NaN;
+        double sum = 0;
+        for (double v : values) sum += (v - mean) * (v - mean);
+        double stddev = Math.sqrt(sum / (values.length - 1));
+        return 3.29 * stddev / Math.sqrt(values.length);
+    }
+}
@@ -0,0 +1,141 @@
+package com.ydy.api.es.bench;
+
+import com.ydy.api.es.SmartSearch;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ͻ˴Ļ׼ԣҪȺ
+ * ÿִеʴֶαͬչͲѯ
+ * <pre>
+ * java -cp out:lib/*:elasticsearch-2.3.0.jar com.ydy.api.es.bench.SmartSearchBench depth=4 width=8 list=4 dict=1000
+ * </pre>
+ * Ϊkey=value
+ * depth Ƕײwidth ÿֶlist 鳤ȣhits dict ͬ
+ * warmup Ԥiterations time ÿֺfilter ֻƥ
+ */
+public class SmartSearchBench {
+    private static final String INDEX = "bench";
+    private static final String TYPE = "doc";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        int depth = intOption(options, "depth", 4);
+        int width = intOption(options, "width", 8);
+        int list = intOption(options, "list", 4);
+        int hits = intOption(options, "hits", 10);
+        int dict = intOption(options, "dict", 1000);
+
+        DocGenerator generator = new DocGenerator(depth, width, list);
+        final Map<String, Object> doc = generator.doc();
+        final SearchResponse response = generator.response(hits);
+        final List<BytesReference> sources = new ArrayList<>();
+        for (int i = 0; i < hits; i++) {
+            sources.add(XContentFactory.jsonBuilder().map(generator.doc()).bytes());
+        }
+        final List<String> keywords = generator.keywords(dict);
+        final String deepTarget = DocGenerator.field(depth - 1, 2);
+
+        File synonyms = generator.synonyms(dict);
+        File skips = generator.skips();
+        // ӼȺֻʹÿͻ˴
+        final SmartSearch search = new SmartSearch(null, null);
+        search.registerDictionary(INDEX, TYPE, synonyms.getPath(), skips.getPath());
+        final SmartSearch indexed = new SmartSearch(null, null);
+        indexed.registerDictionary(INDEX, TYPE, synonyms.getPath(), skips.getPath());
+        indexed.setQAFieldIndex(true);
+
+        System.out.println(String.format("depth=%d width=%d list=%d hits=%d dict=%d keywords=%s", depth, width,
+                list, hits, dict, keywords));
+
+        Harness harness = new Harness(intOption(options, "warmup", 3), intOption(options, "iterations", 5),
+                intOption(options, "time", 1000));
+
+        harness.add("getQA", new Harness.Benchmark() {
+            @Override
+            public Object run() {
+                return search.getQA(INDEX, TYPE, response, keywords);
+            }
+        });
+        harness.add("getQA.fieldIndex", new Harness.Benchmark() {
+            @Override
+            public Object run() {
+                return indexed.getQA(INDEX, TYPE, response, keywords);
+            }
+        });
+        harness.add("getQA.topK", new Harness.Benchmark() {
+            @Override
+            public Object run() {
+                return search.getQA(INDEX, TYPE, response, keywords, hits);
+            }
+        });
+        // ÿʹµ_sourceĿ
+        harness.add("getQA.parseSource", new Harness.Benchmark() {
+            @Override
+            public Object run() {
+                return search.getQA(INDEX, TYPE, DocGenerator.response(sources), keywords);
+            }
+        });
+        harness.add("search.deepField", new Harness.Benchmark() {
+            @Override
+            public Object run() {
+                return search.search(doc, deepTarget);
+            }
+        });
+        harness.add("search.missingField", new Harness.Benchmark() {
+            @Override
+            public Object run() {
+                return search.search(doc, "missing");
+            }
+        });
+        harness.add("parseNestedObject", new Harness.Benchmark() {
+            @Override
+            public Object run() {
+                List<List<String>> res = new ArrayList<>();
+                search.parseNestedObject(doc, new ArrayList<String>(), res);
+                return res;
+            }
+        });
+        harness.add("getFieldSet", new Harness.Benchmark() {
+            @Override
+            public Object run() {
+                HashSet<String> set = new HashSet<>();
+                search.getFieldSet(doc, set);
+                return set;
+            }
+        });
+        harness.add("getTargetField", new Harness.Benchmark() {
+            @Override
+            public Object run() {
+                return search.getTargetField(INDEX, TYPE, keywords);
+            }
+        });
+        for (final SmartSearch.QueryMode mode : SmartSearch.QueryMode.values()) {
+            harness.add("buildQuery." + mode, new Harness.Benchmark() {
+                @Override
+                public Object run() {
+                    return search.buildQuery("_all", keywords, mode).buildAsBytes();
+                }
+            });
+        }
+
+        harness.run(options.get("filter"));
+    }
+
+    private static int intOption(Map<String, String> options, String key, int defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,116 @@
+package com.ydy.api.es;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ִʽ棬(index, ִ, )ִʽ
+ * ʱLRṶ
+ */
+public class AnalyzeCache {
+    private final Cache<Key, List<String>> cache;
+
+    /**
+     * @param maxSize ໺ִʽ
+     */
+    public AnalyzeCache(long maxSize) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * ѯ
+     * @param index index
+     * @param analyzer ִ
+     * @param text ִ
+     * @return ִʽĿδзnull
+     */
+    public List<String> get(String index, String analyzer, String text) {
+        List<String> keywords = cache.getIfPresent(new Key(index, analyzer, text));
+        return keywords == null ? null : new ArrayList<>(keywords);
+    }
+
+    /**
+     * д뻺
+     * @param index index
+     * @param analyzer ִ
+     * @param text ִ
+     * @param keywords ִʽ
+     */
+    public void put(String index, String analyzer, String text, List<String> keywords) {
+        cache.put(new Key(index, analyzer, text), Collections.unmodifiableList(new ArrayList<>(keywords)));
+    }
+
+    /**
+     * ջ
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return ǰ
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return д
+     */
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return δд
+     */
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * @return ͳƣʡ̭
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static final class Key {
+        private final String index;
+        private final String analyzer;
+        private final String text;
+        private final int hash;
+
+        Key(String index, String analyzer, String text) {
+            this.index = index;
+            this.analyzer = analyzer;
+            this.text = text;
+            int h = index == null ? 0 : index.hashCode();
+            h = 31 * h + analyzer.hashCode();
+            h = 31 * h + text.hashCode();
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && (index == null ? key.index == null : index.equals(key.index))
+                    && analyzer.equals(key.analyzer) && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.ydy.api.es;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ѹԺͳƵ
+ * Ⱥܾdocָ˱ύδɵdocﵽʱadd
+ * ÿdocҪôдɹҪôʧܲصFailureListenerᾲĬʧ
+ */
+public class BulkIngester implements Closeable {
+    /**
+     * docдʧʱĻص
+     */
+    public interface FailureListener {
+        /**
+         * @param request ʧܵ
+         * @param message ʧԭ
+         */
+        void onFailure(ActionRequest<?> request, String message);
+    }
+
+    private final BulkProcessor processor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final FailureListener failureListener;
+
+    // ӳԵ߳
+    private final ScheduledExecutorService retryScheduler;
+
+    // <Դ>
+    private final Map<ActionRequest<?>, Integer> attempts = new ConcurrentHashMap<>();
+
+    // <idʼʱ>
+    private final Map<Long, Long> bulkStarts = new ConcurrentHashMap<>();
+
+    private final AtomicLong docs = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong bulks = new AtomicLong();
+    private final Recorder latencyRecorder = new Recorder(3);
+    private final Histogram latency = new Histogram(3);
+    private final long startMillis = System.currentTimeMillis();
+    private boolean closed;
+
+    private BulkIngester(Builder builder) {
+        this.maxInFlight = builder.maxInFlight;
+        this.inFlight = new Semaphore(builder.maxInFlight);
+        this.maxRetries = builder.maxRetries;
+        this.initialBackoffMillis = builder.initialBackoffMillis;
+        this.maxBackoffMillis = builder.maxBackoffMillis;
+        this.failureListener = builder.failureListener;
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "smartsearch-bulk-retry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.processor = BulkProcessor.builder(builder.client, new BulkProcessor.Listener() {
+            @Override
+            public void beforeBulk(long executionId, BulkRequest request) {
+                bulkStarts.put(executionId, System.nanoTime());
+                bytes.addAndGet(request.estimatedSizeInBytes());
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+                recordLatency(executionId);
+                for (BulkItemResponse item : response.getItems()) {
+                    ActionRequest<?> itemRequest = request.requests().get(item.getItemId());
+                    if (!item.isFailed()) {
+                        succeeded(itemRequest);
+                    } else if (isRejected(item.getFailure())) {
+                        retryOrFail(itemRequest, item.getFailureMessage());
+                    } else {
+                        fail(itemRequest, item.getFailureMessage());
+                    }
+                }
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+                recordLatency(executionId);
+                // 󱻾ܾʱȫԣ쳣ȫʧ
+                boolean rejected = ExceptionsHelper.unwrap(failure, EsRejectedExecutionException.class) != null;
+                for (ActionRequest<?> itemRequest : request.requests()) {
+                    if (rejected) {
+                        retryOrFail(itemRequest, failure.toString());
+                    } else {
+                        fail(itemRequest, failure.toString());
+                    }
+                }
+            }
+        })
+                .setBulkActions(builder.bulkActions)
+                .setBulkSize(builder.bulkSize)
+                .setConcurrentRequests(builder.concurrentRequests)
+                // ֤Եdocһֱڻ
+                .setFlushInterval(TimeValue.timeValueMillis(builder.flushIntervalMillis))
+                // ɱఴdoc
+                .setBackoffPolicy(BackoffPolicy.noBackoff())
+                .build();
+    }
+
+    /**
+     * ύһdocδɵdocﵽʱ
+     * @param request д
+     * @throws InterruptedException ȴʱж
+     */
+    public void add(ActionRequest<?> request) throws InterruptedException {
+        inFlight.acquire();
+        processor.add(request);
+    }
+
+    /**
+     * ȴdocɣԣر
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            // Եdocprocessorرǰύȵdocн
+            while (!inFlight.tryAcquire(maxInFlight, 100, TimeUnit.MILLISECONDS)) {
+                processor.flush();
+            }
+            inFlight.release(maxInFlight);
+            processor.awaitClose(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            processor.close();
+        } finally {
+            retryScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * @return ǰͳƿ
+     */
+    public synchronized IngestStats stats() {
+        latency.add(latencyRecorder.getIntervalHistogram());
+        return new IngestStats(docs.get(), failed.get(), retries.get(), bytes.get(), bulks.get(),
+                System.currentTimeMillis() - startMillis, latency.copy());
+    }
+
+    private void recordLatency(long executionId) {
+        bulks.incrementAndGet();
+        Long start = bulkStarts.remove(executionId);
+        if (start != null) {
+            latencyRecorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    private static boolean isRejected(BulkItemResponse.Failure failure) {
+        return failure.getStatus() == RestStatus.TOO_MANY_REQUESTS
+                || ExceptionsHelper.unwrap(failure.getCause(), EsRejectedExecutionException.class) != null;
+    }
+
+    private void succeeded(ActionRequest<?> request) {
+        attempts.remove(request);
+        docs.incrementAndGet();
+        inFlight.release();
+    }
+
+    private void fail(ActionRequest<?> request, String message) {
+        attempts.remove(request);
+        failed.incrementAndGet();
+        inFlight.release();
+        if (failureListener != null) {
+            failureListener.onFailure(request, message);
+        }
+    }
+
+    private void retryOrFail(final ActionRequest<?> request, String message) {
+        Integer attempt = attempts.get(request);
+        int n = attempt == null ? 1 : attempt + 1;
+        if (n > maxRetries) {
+            fail(request, message);
+            return;
+        }
+        attempts.put(request, n);
+        retries.incrementAndGet();
+        // ָ˱ܣinitial * 2^(n-1)
+        long delay = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(n - 1, 30));
+        retryScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                processor.add(request);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * BulkIngesterĹ
+     */
+    public static class Builder {
+        private final Client client;
+        private int bulkActions = 1000;
+        private ByteSizeValue bulkSize = new ByteSizeValue(5, ByteSizeUnit.MB);
+        private int concurrentRequests = 1;
+        private int maxInFlight = 10000;
+        private int maxRetries = 8;
+        private long initialBackoffMillis = 50;
+        private long maxBackoffMillis = 10000;
+        private long flushIntervalMillis = 1000;
+        private FailureListener failureListener;
+
+        public Builder(Client client) {
+            this.client = client;
+        }
+
+        /**
+         * @param bulkActions ٸdocʹһӵ
+         */
+        public Builder setBulkActions(int bulkActions) {
+            this.bulkActions = bulkActions;
+            return this;
+        }
+
+        /**
+         * @param bulkSize flush
+         */
+        public Builder setBulkSize(ByteSizeValue bulkSize) {
+            this.bulkSize = bulkSize;
+            return this;
+        }
+
+        /**
+         * @param concurrentRequests ͬʱе
+         */
+        public Builder setConcurrentRequests(int concurrentRequests) {
+            this.concurrentRequests = concurrentRequests;
+            return this;
+        }
+
+        /**
+         * @param maxInFlight ύδɵdocޣﵽadd
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @param maxRetries ܾdocԼ
+         * @param initialBackoff һǰȴʱ
+         * @param maxBackoff Եȴʱ
+         * @param unit ʱ䵥λ
+         */
+        public Builder setRetry(int maxRetries, long initialBackoff, long maxBackoff, TimeUnit unit) {
+            this.maxRetries = maxRetries;
+            this.initialBackoffMillis = unit.toMillis(initialBackoff);
+            this.maxBackoffMillis = unit.toMillis(maxBackoff);
+            return this;
+        }
+
+        /**
+         * @param flushInterval еdocȴñ
+         * @param unit ʱ䵥λ
+         */
+        public Builder setFlushInterval(long flushInterval, TimeUnit unit) {
+            this.flushIntervalMillis = unit.toMillis(flushInterval);
+            return this;
+        }
+
+        /**
+         * @param failureListener docдʧʱĻص
+         */
+        public Builder setFailureListener(FailureListener failureListener) {
+            this.failureListener = failureListener;
+            return this;
+        }
+
+        public BulkIngester build() {
+            return new BulkIngester(this);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.ydy.api.es;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * ʴʹõĴʵ䣺ֶͬʼشֶ
+ * ɺ󲻿ɱ䣬ʱ滻
+ */
+public class Dictionary {
+    public static final Dictionary EMPTY = new Dictionary(Collections.<String, String>emptyMap(),
+            SynonymMatcher.EMPTY, Collections.<String>emptySet());
+
+    // ֶͬ <ͬʣֶ>
+    private final Map<String, String> synonyms;
+
+    // ͬʱɵԶ
+    private final SynonymMatcher matcher;
+
+    // شֶ
+    private final Set<String> skips;
+
+    // Ԥڴӳʵ䣬nullʾʵڶϣͬʶڱʱִʣƥڶ
+    private final MappedDictionary mapped;
+
+    private Dictionary(Map<String, String> synonyms, SynonymMatcher matcher, Set<String> skips) {
+        this.synonyms = synonyms;
+        this.matcher = matcher;
+        this.skips = skips;
+        this.mapped = null;
+    }
+
+    private Dictionary(MappedDictionary mapped) {
+        this.synonyms = mapped.synonyms();
+        this.matcher = null;
+        this.skips = mapped.skips();
+        this.mapped = mapped;
+    }
+
+    /**
+     * ıļشʵ䣬ļΪմʵ
+     * ͬļÿΪ"ֶ ͬ ͬ..."شļÿһֶ
+     * @param synonymsFile ͬļ
+     * @param skipsFile شֶļ
+     * @param tokenizer ͬʷִʣƥִʺΪʵͬʣnullʾִ
+     * @return ʵ
+     * @throws IOException ļʧ
+     */
+    public static Dictionary load(String synonymsFile, String skipsFile,
+                                  Function<String, List<String>> tokenizer) throws IOException {
+        Map<String, String> synonyms = readSynonyms(synonymsFile);
+        Set<String> skips = readSkips(skipsFile);
+
+        return new Dictionary(Collections.unmodifiableMap(synonyms), compile(synonyms, tokenizer),
+                Collections.unmodifiableSet(skips));
+    }
+
+    /**
+     * ӳMappedDictionary.compileõĴʵļڶ
+     * @param compiledFile õĴʵļ
+     * @return ʵ
+     * @throws IOException ļʧܻʽȷ
+     */
+    public static Dictionary open(String compiledFile) throws IOException {
+        return open(compiledFile, null);
+    }
+
+    /**
+     * ӳõĴʵļʱķִʷʽ
+     * ͬʶڱʱѷִʣʱٷִʣִʷʽһµļMappedDictionary±
+     * @param compiledFile õĴʵļ
+     * @param tokenizerVersion ǰִʷʽİ汾nullʾ
+     * @return ʵ
+     * @throws IOException ļʧܡʽȷִʷʽİ汾һ
+     */
+    public static Dictionary open(String compiledFile, String tokenizerVersion) throws IOException {
+        MappedDictionary mapped = MappedDictionary.open(compiledFile);
+        if (tokenizerVersion != null && !tokenizerVersion.equals(mapped.tokenizerVersion())) {
+            throw new IOException(compiledFile + " was compiled with tokenizer " + mapped.tokenizerVersion()
+                    + " but " + tokenizerVersion + " is in use, recompile it with MappedDictionary");
+        }
+        return new Dictionary(mapped);
+    }
+
+    /**
+     * ͬļÿΪ"ֶ ͬ ͬ..."ļʱؿ
+     * @param synonymsFile ͬļ
+     * @return <ͬʣֶ>
+     * @throws IOException ļʧ
+     */
+    static Map<String, String> readSynonyms(String synonymsFile) throws IOException {
+        Map<String, String> synonyms = new HashMap<>();
+        if (exists(synonymsFile)) {
+            try (BufferedReader br = new BufferedReader(new FileReader(synonymsFile))) {
+                String line = br.readLine();
+
+                while (line != null) {
+                    String[] splits = line.split(" ");
+                    if (splits.length > 1) {
+                        for (int i = 1; i < splits.length; i++) {
+                            synonyms.put(splits[i], splits[0]);
+                        }
+                    }
+                    line = br.readLine();
+                }
+            }
+        }
+        return synonyms;
+    }
+
+    /**
+     * شֶļÿһֶļʱؿ
+     * @param skipsFile شֶļ
+     * @return شֶ
+     * @throws IOException ļʧ
+     */
+    static Set<String> readSkips(String skipsFile) throws IOException {
+        Set<String> skips = new HashSet<>();
+        if (exists(skipsFile)) {
+            try (BufferedReader br = new BufferedReader(new FileReader(skipsFile))) {
+                String line = br.readLine();
+
+                while (line != null) {
+                    skips.add(line);
+                    line = br.readLine();
+                }
+            }
+        }
+        return skips;
+    }
+
+    /**
+     * µķִʷʽ±ͬԶ
+     * ԤĴʵڱʱѷִʣԭ
+     * @param tokenizer ͬʷִʣnullʾִ
+     * @return µĴʵ
+     */
+    public Dictionary recompile(Function<String, List<String>> tokenizer) {
+        if (mapped != null) return this;
+        return new Dictionary(synonyms, compile(synonyms, tokenizer), skips);
+    }
+
+    private static SynonymMatcher compile(Map<String, String> synonyms, Function<String, List<String>> tokenizer) {
+        SynonymMatcher.Builder builder = new SynonymMatcher.Builder();
+        for (Map.Entry<String, String> entry : synonyms.entrySet()) {
+            // ԭΪʵƥ
+            builder.add(entry.getKey(), entry.getValue());
+            if (tokenizer != null) {
+                builder.add(tokenizer.apply(entry.getKey()), entry.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean exists(String fileName) {
+        return fileName != null && new File(fileName).isFile();
+    }
+
+    /**
+     * ڷִʽƥͬ
+     * @param keywords ķִ
+     * @return еͬʶӦֶ
+     */
+    public List<String> matchSynonyms(List<String> keywords) {
+        return mapped != null ? mapped.match(keywords) : matcher.match(keywords);
+    }
+
+    /**
+     * @param field ֶ
+     * @return Ƿ񲻻شֶ
+     */
+    public boolean isSkip(String field) {
+        return skips.contains(field);
+    }
+
+    /**
+     * @return ͬ <ͬʣֶ>޸ģԤʵΪֻͼ
+     */
+    public Map<String, String> getSynonyms() {
+        return synonyms;
+    }
+
+    /**
+     * @return شֶ޸
+     */
+    public Set<String> getSkips() {
+        return skips;
+    }
+}
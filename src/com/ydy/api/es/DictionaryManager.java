@@ -0,0 +1,277 @@
+package com.ydy.api.es;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * index/typeʵ䣬ļ仯ʱԶ¼
+ * ¼ʱȹ´ʵ滻ҲῴһĴʵ
+ */
+public class DictionaryManager {
+    /**
+     * ʵ仯֪ͨʹʵĻʧЧ
+     */
+    public interface Listener {
+        /**
+         * ʵעᡢȡעᡢ¼ػ±
+         * @param index ʵindexnullʾindex
+         * @param type ʵtypenullʾtype
+         */
+        void onChange(String index, String type);
+    }
+
+    // ʾindextype
+    private static final String ANY = "*";
+
+    // <index<typeʵ>>
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Entry>> entries = new ConcurrentHashMap<>();
+
+    // ͬʷִʵķʽnullʾִ
+    private volatile Function<String, List<String>> tokenizer;
+
+    // ִʷʽİ汾Ԥʵʱİ汾֮һ£nullʾ
+    private volatile String tokenizerVersion;
+
+    private ScheduledExecutorService reloader;
+
+    // ʵ仯֪ͨnullʾ֪ͨ
+    private final Listener listener;
+
+    public DictionaryManager() {
+        this(null);
+    }
+
+    /**
+     * @param listener ʵ仯ʱ֪ͨnullʾ֪ͨ
+     */
+    public DictionaryManager(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * עʵ䣬Ѵʱ滻
+     * @param index indexnullʾindex
+     * @param type typenullʾtype
+     * @param synonymsFile ͬļ
+     * @param skipsFile شֶļ
+     */
+    public void register(String index, String type, String synonymsFile, String skipsFile) {
+        put(index, type, new Entry(index, type, synonymsFile, skipsFile, null));
+    }
+
+    /**
+     * עԤĴʵ䣬Ѵʱ滻
+     * ļڴӳ䷽ʽ򿪣޸ʱ仯ӳ
+     * @param index indexnullʾindex
+     * @param type typenullʾtype
+     * @param compiledFile MappedDictionary.compileĴʵļ
+     */
+    public void registerCompiled(String index, String type, String compiledFile) {
+        put(index, type, new Entry(index, type, null, null, compiledFile));
+    }
+
+    private void put(String index, String type, Entry entry) {
+        // ȼز´ʵ֪֪֮ͨͨĲѯܿ´ʵ
+        entry.load();
+        ConcurrentHashMap<String, Entry> types = entries.get(key(index));
+        if (types == null) {
+            ConcurrentHashMap<String, Entry> created = new ConcurrentHashMap<>();
+            types = entries.putIfAbsent(key(index), created);
+            if (types == null) types = created;
+        }
+        types.put(key(type), entry);
+        changed(index, type);
+    }
+
+    /**
+     * ȡעĴʵ
+     * @param index indexnullʾindex
+     * @param type typenullʾtype
+     */
+    public void unregister(String index, String type) {
+        Map<String, Entry> types = entries.get(key(index));
+        if (types != null && types.remove(key(type)) != null) {
+            changed(index, type);
+        }
+    }
+
+    /**
+     * index/typeʹõĴʵ
+     * βindex/typeindextypeindexµtypeĬϴʵ
+     * @param index indexnullʾindex
+     * @param type typenullʾtype
+     * @return ʵ䣬ûעʱؿմʵ
+     */
+    public Dictionary get(String index, String type) {
+        Entry entry = null;
+        if (index != null) {
+            entry = find(index, type);
+        }
+        if (entry == null) {
+            entry = find(ANY, type);
+        }
+        return entry == null ? Dictionary.EMPTY : entry.dictionary;
+    }
+
+    private Entry find(String index, String type) {
+        Map<String, Entry> types = entries.get(index);
+        if (types == null) return null;
+        Entry entry = type == null ? null : types.get(type);
+        return entry != null ? entry : types.get(ANY);
+    }
+
+    /**
+     * ͬʵķִʷʽ±дʵ
+     * @param tokenizer ͬʷִʣnullʾִ
+     */
+    public void setTokenizer(Function<String, List<String>> tokenizer) {
+        setTokenizer(tokenizer, null);
+    }
+
+    /**
+     * ͬʵķִʷʽ±ıʵ䣬¼Ԥʵ
+     * Ԥʵڱʱѷִʣʱִʣʱİ汾һʱܾزԭʵ
+     * @param tokenizer ͬʷִʣnullʾִ
+     * @param tokenizerVersion ִʷʽİ汾nullʾԤʵ
+     */
+    public void setTokenizer(Function<String, List<String>> tokenizer, String tokenizerVersion) {
+        this.tokenizer = tokenizer;
+        this.tokenizerVersion = tokenizerVersion;
+        for (Map<String, Entry> types : entries.values()) {
+            for (Entry entry : types.values()) {
+                entry.recompile();
+            }
+        }
+    }
+
+    /**
+     * дʵļб仯¼
+     */
+    public void reloadIfModified() {
+        for (Map<String, Entry> types : entries.values()) {
+            for (Entry entry : types.values()) {
+                if (entry.isModified()) {
+                    entry.reload();
+                }
+            }
+        }
+    }
+
+    /**
+     * ̶̨߳ʱʵļ
+     * @param interval 
+     * @param unit ʱ䵥λ
+     */
+    public synchronized void startAutoReload(long interval, TimeUnit unit) {
+        stopAutoReload();
+        reloader = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "smartsearch-dictionary-reloader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        reloader.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                reloadIfModified();
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * ֹ̨ͣ
+     */
+    public synchronized void stopAutoReload() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+    }
+
+    private static String key(String s) {
+        return s == null ? ANY : s;
+    }
+
+    private void changed(String index, String type) {
+        if (listener != null) {
+            listener.onChange(index, type);
+        }
+    }
+
+    /**
+     * һʵļ䵱ǰصĴʵ
+     * غ±붼ڶȡִʷʽsetTokenizerʱþɵķִʷʽ±Ĵʵ
+     */
+    private final class Entry {
+        private final String index;
+        private final String type;
+        private final String synonymsFile;
+        private final String skipsFile;
+        private final String compiledFile;
+        private volatile Dictionary dictionary = Dictionary.EMPTY;
+        private volatile long synonymsModified;
+        private volatile long skipsModified;
+        private volatile long compiledModified;
+
+        Entry(String index, String type, String synonymsFile, String skipsFile, String compiledFile) {
+            this.index = index;
+            this.type = type;
+            this.synonymsFile = synonymsFile;
+            this.skipsFile = skipsFile;
+            this.compiledFile = compiledFile;
+        }
+
+        boolean isModified() {
+            return lastModified(synonymsFile) != synonymsModified || lastModified(skipsFile) != skipsModified
+                    || lastModified(compiledFile) != compiledModified;
+        }
+
+        void reload() {
+            if (load()) changed(index, type);
+        }
+
+        /**
+         * شʵļ֪ͨ
+         * @return Ƿسɹ
+         */
+        synchronized boolean load() {
+            long synonymsTime = lastModified(synonymsFile);
+            long skipsTime = lastModified(skipsFile);
+            long compiledTime = lastModified(compiledFile);
+            try {
+                dictionary = compiledFile != null ? Dictionary.open(compiledFile, tokenizerVersion) :
+                        Dictionary.load(synonymsFile, skipsFile, tokenizer);
+                synonymsModified = synonymsTime;
+                skipsModified = skipsTime;
+                compiledModified = compiledTime;
+                return true;
+            } catch (Exception e) {
+                // ʧʱԭʵ
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        synchronized void recompile() {
+            if (compiledFile != null) {
+                reload();
+                return;
+            }
+            dictionary = dictionary.recompile(tokenizer);
+            changed(index, type);
+        }
+
+        private long lastModified(String fileName) {
+            return fileName == null ? 0 : new File(fileName).lastModified();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.ydy.api.es;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.SearchHit;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ֶ <ֶһγʱֵ>
+ * SourceWalkerԽһ֮ÿֶεĲΪO(1)
+ * SmartSearch.search(Map, String)DFSһȡеһƥķnullֵ
+ */
+public class FieldIndex {
+    private static final FieldIndex EMPTY = new FieldIndex(new HashMap<String, Object>());
+
+    // ±ΪֶԤɱظַ
+    private static final String[] INDEX_NAMES = new String[64];
+
+    static {
+        for (int i = 0; i < INDEX_NAMES.length; i++) {
+            INDEX_NAMES[i] = String.valueOf(i);
+        }
+    }
+
+    private final Map<String, Object> fields;
+
+    private FieldIndex(Map<String, Object> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * ĵһֶ
+     * @param res 
+     * @return ֶ޽ʱΪ
+     */
+    public static FieldIndex of(SearchResponse res) {
+        SearchHit[] hits = res.getHits().getHits();
+        if (hits.length > 0) {
+            // ΪصĽڵһ
+            return of(hits[0].getSource());
+        }
+        return EMPTY;
+    }
+
+    /**
+     * һǶ׵mapֶ
+     * @param node еһ
+     * @return ֶ
+     */
+    public static FieldIndex of(Map<String, Object> node) {
+        if (node == null) return EMPTY;
+        final Map<String, Object> fields = new HashMap<>();
+        SourceWalker.walk(node, new SourceVisitor() {
+            @Override
+            public boolean enterField(List<String> path, String name, Object value) {
+                // ȳֵֶȣDFSƥ˳һ
+                fields.putIfAbsent(name, value);
+                return true;
+            }
+
+            @Override
+            public boolean enterElement(List<String> path, int index, Object value) {
+                // Ԫ±Ϊֶ
+                fields.putIfAbsent(indexName(index), value);
+                return true;
+            }
+        });
+        return new FieldIndex(fields);
+    }
+
+    /**
+     * ֶ
+     * @param target Ѱҵֶ
+     * @return شֶΣֶǶףnullʾ޷ش
+     */
+    public Object get(String target) {
+        return fields.get(target);
+    }
+
+    /**
+     * @return еֶ
+     */
+    public int size() {
+        return fields.size();
+    }
+
+    private static String indexName(int i) {
+        return i < INDEX_NAMES.length ? INDEX_NAMES[i] : String.valueOf(i);
+    }
+}
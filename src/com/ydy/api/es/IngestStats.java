@@ -0,0 +1,71 @@
+package com.ydy.api.es;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * ͳƿ
+ */
+public class IngestStats {
+    // ɹдdoc
+    public final long docs;
+
+    // ʧܵdoc
+    public final long failed;
+
+    // ȺܾԵĴ
+    public final long retries;
+
+    // ѷ͵ֽ
+    public final long bytes;
+
+    // ɵ
+    public final long bulks;
+
+    // ʼʱ䣬λ
+    public final long elapsedMillis;
+
+    // ÿӳ٣λ΢
+    public final Histogram bulkLatency;
+
+    IngestStats(long docs, long failed, long retries, long bytes, long bulks, long elapsedMillis,
+                Histogram bulkLatency) {
+        this.docs = docs;
+        this.failed = failed;
+        this.retries = retries;
+        this.bytes = bytes;
+        this.bulks = bulks;
+        this.elapsedMillis = elapsedMillis;
+        this.bulkLatency = bulkLatency;
+    }
+
+    /**
+     * @return ƽÿдdoc
+     */
+    public double docsPerSecond() {
+        return elapsedMillis == 0 ? 0 : docs * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return ƽÿ뷢͵ֽ
+     */
+    public double bytesPerSecond() {
+        return elapsedMillis == 0 ? 0 : bytes * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @param percentile ٷλ99.0
+     * @return ӳٵİٷλλ
+     */
+    public double bulkLatencyMillis(double percentile) {
+        return bulkLatency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("docs=%d failed=%d retries=%d bulks=%d docs/s=%.1f MB/s=%.2f "
+                        + "latency(ms) p50=%.1f p90=%.1f p99=%.1f max=%.1f",
+                docs, failed, retries, bulks, docsPerSecond(), bytesPerSecond() / (1024 * 1024),
+                bulkLatencyMillis(50), bulkLatencyMillis(90), bulkLatencyMillis(99),
+                bulkLatency.getMaxValue() / 1000.0);
+    }
+}
@@ -0,0 +1,363 @@
+package com.ydy.api.es;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.elasticsearch.action.search.MultiSearchRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.QueryBuilders;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ĵƵʲüȫֶķִ
+ * indexд󲿷ĵķִʣ硰ġǡֽȴÿshardĵű
+ * ĵƵռĵıֵķִʱȥ򽵵Ȩأٱһִ
+ * ĵƵں̨MultiSearchļȡ棬ʱֻ黺棬
+ * лûеķִԭ´κ̨ˢʱȡ
+ */
+public class KeywordPruner {
+    /**
+     * ƵִʵĴʽ
+     */
+    public enum Mode {
+        // ӲѯȥshardĹ
+        DROP,
+
+        // ڲѯУȨأֻٶӰ
+        DOWNWEIGHT
+    }
+
+    /**
+     * һִʵĴ
+     */
+    public enum Action {
+        KEEP, DROP, DOWNWEIGHT
+    }
+
+    // ÿMultiSearchٸ
+    private static final int BATCH_SIZE = 100;
+
+    private final Client client;
+    private final double maxRatio;
+    private final Mode mode;
+    private final float weight;
+    private final long maxTerms;
+    private final long ttlNanos;
+
+    // index/typeͳ <index/typeͳ>
+    private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService refresher;
+
+    /**
+     * @param client Clientʵ
+     * @param maxRatio ĵƵռĵıֵ01֮䣬ʱü
+     * @param mode ƵִʵĴʽ
+     * @param weight DOWNWEIGHTʱƵִʵȨ
+     * @param maxTerms ÿindex/type໺ٸִʵĵƵ
+     * @param ttl ĵƵʵЧڣں»ȡ
+     * @param unit ʱ䵥λ
+     */
+    public KeywordPruner(Client client, double maxRatio, Mode mode, float weight, long maxTerms,
+                         long ttl, TimeUnit unit) {
+        if (maxRatio <= 0 || maxRatio > 1) throw new IllegalArgumentException("maxRatio must be in (0, 1]: " + maxRatio);
+        this.client = client;
+        this.maxRatio = maxRatio;
+        this.mode = mode;
+        this.weight = weight;
+        this.maxTerms = maxTerms;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * üִʣֻ黺棬
+     * @param index index
+     * @param type type
+     * @param keywords ķִ
+     * @return üÿִʵĴ
+     */
+    public Reduction reduce(String index, String type, List<String> keywords) {
+        Stats s = stats(index, type);
+        long docCount = s.docCount;
+
+        // ͬķִֻжһ
+        Map<String, Decision> decisions = new LinkedHashMap<>();
+        for (String keyword : keywords) {
+            if (decisions.containsKey(keyword)) continue;
+            Long df = s.docFreqs.getIfPresent(keyword);
+            if (df == null) {
+                // ȡķִ뻺ͬ
+                if (s.pending.size() < maxTerms) s.pending.add(keyword);
+                decisions.put(keyword, new Decision(keyword, -1, docCount, Action.KEEP, "doc freq unknown"));
+            } else if (docCount > 0 && (double) df / docCount > maxRatio) {
+                decisions.put(keyword, new Decision(keyword, df, docCount,
+                        mode == Mode.DROP ? Action.DROP : Action.DOWNWEIGHT, "ratio above " + maxRatio));
+            } else {
+                decisions.put(keyword, new Decision(keyword, df, docCount, Action.KEEP, "ratio within " + maxRatio));
+            }
+        }
+
+        // ȫüʱĵƵ͵ķִ
+        Decision rarest = null;
+        for (Decision decision : decisions.values()) {
+            if (decision.action == Action.KEEP) {
+                rarest = null;
+                break;
+            }
+            if (rarest == null || decision.docFreq < rarest.docFreq) rarest = decision;
+        }
+        if (rarest != null) {
+            decisions.put(rarest.term, new Decision(rarest.term, rarest.docFreq, rarest.docCount, Action.KEEP,
+                    "rarest token kept"));
+        }
+
+        List<String> kept = new ArrayList<>(keywords.size());
+        Map<String, Float> boosts = new HashMap<>();
+        for (String keyword : keywords) {
+            Decision decision = decisions.get(keyword);
+            if (decision.action == Action.DROP) continue;
+            kept.add(keyword);
+            if (decision.action == Action.DOWNWEIGHT) boosts.put(keyword, weight);
+        }
+        return new Reduction(kept, boosts, new ArrayList<>(decisions.values()));
+    }
+
+    /**
+     * ȡлûлѹڵķִʵĵƵʣͬʱĵ
+     * ûдȡķִʱҲĵindexѻĵƵʲԹʱ
+     * index/typeʧʱȡķִʣ´
+     */
+    public void refresh() {
+        for (Stats s : stats.values()) {
+            List<String> terms = new ArrayList<>(s.pending);
+            int i = 0;
+            do {
+                List<String> batch = terms.subList(i, Math.min(i + BATCH_SIZE, terms.size()));
+                try {
+                    count(s, batch);
+                } catch (Exception e) {
+                    // ȡʧʱʹûеĵƵ
+                    e.printStackTrace();
+                    break;
+                }
+                i += BATCH_SIZE;
+            } while (i < terms.size());
+        }
+    }
+
+    /**
+     * һMultiSearchȡһִʵĵƵʣһΪĵ
+     * ʹȫֶͬmatch_phraseĵƵʼӾеĵ
+     */
+    private void count(Stats s, List<String> terms) {
+        MultiSearchRequestBuilder multiSearch = client.prepareMultiSearch();
+        multiSearch.add(client.prepareSearch(s.index).setTypes(s.type).setSize(0)
+                .setQuery(QueryBuilders.matchAllQuery()));
+        for (String term : terms) {
+            multiSearch.add(client.prepareSearch(s.index).setTypes(s.type).setSize(0)
+                    .setQuery(QueryBuilders.matchPhraseQuery("_all", term)));
+        }
+
+        MultiSearchResponse.Item[] items = multiSearch.get().getResponses();
+        if (!items[0].isFailure()) {
+            s.docCount = items[0].getResponse().getHits().getTotalHits();
+        }
+        for (int i = 0; i < terms.size(); i++) {
+            MultiSearchResponse.Item item = items[i + 1];
+            if (item.isFailure()) continue;
+            s.docFreqs.put(terms.get(i), item.getResponse().getHits().getTotalHits());
+            s.pending.remove(terms.get(i));
+        }
+    }
+
+    /**
+     * @param index index
+     * @param type type
+     * @param term ִ
+     * @return ĵƵʣδȡʱ-1
+     */
+    public long docFreq(String index, String type, String term) {
+        Long df = stats(index, type).docFreqs.getIfPresent(term);
+        return df == null ? -1 : df;
+    }
+
+    /**
+     * @param index index
+     * @param type type
+     * @return ĵδȡʱ-1
+     */
+    public long docCount(String index, String type) {
+        return stats(index, type).docCount;
+    }
+
+    /**
+     * ̨ʱȡĵƵ
+     * @param interval ȡ³ֵķִʱڲü
+     * @param unit ʱ䵥λ
+     */
+    public synchronized void startRefresh(long interval, TimeUnit unit) {
+        stopRefresh();
+        refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "smartsearch-docfreq-refresher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        refresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * ֹ̨ͣʱȡ
+     */
+    public synchronized void stopRefresh() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    private Stats stats(String index, String type) {
+        String key = index + "/" + type;
+        Stats s = stats.get(key);
+        if (s == null) {
+            Stats created = new Stats(index, type, CacheBuilder.newBuilder()
+                    .maximumSize(maxTerms)
+                    .expireAfterWrite(ttlNanos, TimeUnit.NANOSECONDS)
+                    .<String, Long>build());
+            s = stats.putIfAbsent(key, created);
+            if (s == null) s = created;
+        }
+        return s;
+    }
+
+    private static final class Stats {
+        final String index;
+        final String type;
+
+        // ĵδȡʱΪ-1
+        volatile long docCount = -1;
+
+        // ĵƵ <ִʣеĵ>
+        final Cache<String, Long> docFreqs;
+
+        // ȡĵƵʵķִ
+        final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        Stats(String index, String type, Cache<String, Long> docFreqs) {
+            this.index = index;
+            this.type = type;
+            this.docFreqs = docFreqs;
+        }
+    }
+
+    /**
+     * һִʵĴ
+     */
+    public static class Decision {
+        // ִ
+        public final String term;
+
+        // ĵƵʣδ֪ʱΪ-1
+        public final long docFreq;
+
+        // ĵδ֪ʱΪ-1
+        public final long docCount;
+
+        // ʽ
+        public final Action action;
+
+        // ԭ
+        public final String reason;
+
+        public Decision(String term, long docFreq, long docCount, Action action, String reason) {
+            this.term = term;
+            this.docFreq = docFreq;
+            this.docCount = docCount;
+            this.action = action;
+            this.reason = reason;
+        }
+
+        /**
+         * @return ĵƵռĵıδ֪ʱ-1
+         */
+        public double ratio() {
+            return docFreq < 0 || docCount <= 0 ? -1 : (double) docFreq / docCount;
+        }
+
+        @Override
+        public String toString() {
+            return term + " " + action + " df=" + docFreq + "/" + docCount +
+                    (docFreq < 0 || docCount <= 0 ? "" : String.format(" (%.3f)", ratio())) + " " + reason;
+        }
+    }
+
+    /**
+     * ü
+     */
+    public static class Reduction {
+        // ķִʣ˳һ
+        public final List<String> keywords;
+
+        // ȨصķִʼȨأûʱΪ
+        public final Map<String, Float> boosts;
+
+        // ÿִͬʵĴڽͲü
+        public final List<Decision> decisions;
+
+        public Reduction(List<String> keywords, Map<String, Float> boosts, List<Decision> decisions) {
+            this.keywords = keywords;
+            this.boosts = boosts;
+            this.decisions = decisions;
+        }
+
+        /**
+         * üĽ
+         * @param keywords ķִ
+         * @return ԭʹȫִʵĽ
+         */
+        public static Reduction unchanged(List<String> keywords) {
+            return new Reduction(keywords, Collections.<String, Float>emptyMap(), Collections.<Decision>emptyList());
+        }
+
+        /**
+         * @return Ƿзִʱȥ򽵵Ȩ
+         */
+        public boolean isReduced() {
+            for (Decision decision : decisions) {
+                if (decision.action != Action.KEEP) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            Iterator<Decision> iterator = decisions.iterator();
+            while (iterator.hasNext()) {
+                sb.append(iterator.next());
+                if (iterator.hasNext()) sb.append('\n');
+            }
+            return sb.toString();
+        }
+    }
+}
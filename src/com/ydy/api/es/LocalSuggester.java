@@ -0,0 +1,245 @@
+package com.ydy.api.es;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVMڶcompletionֶԶȫ
+ * ɨindexcompletionֶε룬LuceneAnalyzingSuggesterڴнFST
+ * ȫȺʱں̨ؽؽɺ滻
+ */
+public class LocalSuggester {
+    private final Client client;
+    private final String index;
+    private final String field;
+    private final Analyzer analyzer;
+
+    // ǰʹõFSTδʱΪnull
+    private volatile Lookup lookup;
+
+    private ScheduledExecutorService refresher;
+
+    /**
+     * @param client Clientʵ
+     * @param index index
+     * @param field completionֶֶֶֻ֧
+     * @param analyzer completionֶһµķִElasticSearchĬΪsimple
+     */
+    public LocalSuggester(Client client, String index, String field, Analyzer analyzer) {
+        this.client = client;
+        this.index = index;
+        this.field = field;
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * ɨindex½FSTɺ滻ǰFST
+     * @param parallelism ͬʱscrollshard
+     * @return ȫ
+     * @throws IOException FSTʧ
+     * @throws ExecutionException ɨʧ
+     * @throws InterruptedException ȴʱж
+     */
+    public long rebuild(int parallelism) throws IOException, ExecutionException, InterruptedException {
+        final List<Input> inputs = Collections.synchronizedList(new ArrayList<Input>());
+        // ֻɨиֶεdocֻȡظֶε_source
+        new ParallelScroll(client, index, null, QueryBuilders.existsQuery(field), 1000,
+                TimeValue.timeValueMinutes(1), new String[]{field})
+                .run(parallelism, new ParallelScroll.PageHandler() {
+                    @Override
+                    public void onPage(SearchHit[] hits) {
+                        for (SearchHit hit : hits) {
+                            Map<String, Object> source = hit.getSource();
+                            if (source != null) collect(source.get(field), inputs);
+                        }
+                    }
+                });
+
+        AnalyzingSuggester suggester = new AnalyzingSuggester(analyzer);
+        suggester.build(new Inputs(inputs));
+        lookup = suggester;
+        return inputs.size();
+    }
+
+    /**
+     * completionֶεֵȡ룬ַַ֧{input, output, weight}
+     */
+    @SuppressWarnings("unchecked")
+    private static void collect(Object value, List<Input> inputs) {
+        if (value instanceof String) {
+            inputs.add(new Input((String) value, null, 1));
+        } else if (value instanceof List) {
+            for (Object element : (List<Object>) value) {
+                collect(element, inputs);
+            }
+        } else if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            Object output = map.get("output");
+            Object weight = map.get("weight");
+            long w = weight instanceof Number ? ((Number) weight).longValue() :
+                    weight instanceof String ? Long.parseLong((String) weight) : 1;
+            Object input = map.get("input");
+            List<Object> list = input instanceof List ? (List<Object>) input : Collections.singletonList(input);
+            for (Object o : list) {
+                if (o instanceof String) {
+                    inputs.add(new Input((String) o, output instanceof String ? (String) output : null, w));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return FSTǷѽ
+     */
+    public boolean isReady() {
+        return lookup != null;
+    }
+
+    /**
+     * Զȫ
+     * @param text ȫ
+     * @param size ෵ضٸȫ
+     * @return ȫȨشӸߵͣͬĽֻһΣFSTδʱnull
+     */
+    public List<String> suggest(String text, int size) {
+        Lookup current = lookup;
+        if (current == null) return null;
+
+        Set<String> res = new LinkedHashSet<>();
+        try {
+            // ͬoutputȥغsizeʱӱȡֱ㹻ȡ
+            for (int num = size; ; num *= 2) {
+                List<Lookup.LookupResult> results = current.lookup(text, false, num);
+                res.clear();
+                for (Lookup.LookupResult result : results) {
+                    // outputʱoutputElasticSearchһ
+                    res.add(result.payload != null && result.payload.length > 0 ?
+                            result.payload.utf8ToString() : result.key.toString());
+                    if (res.size() == size) break;
+                }
+                if (res.size() >= size || results.size() < num || num > Integer.MAX_VALUE / 2) break;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new ArrayList<>(res);
+    }
+
+    /**
+     * ̨ʱؽ
+     * @param interval ؽ
+     * @param unit ʱ䵥λ
+     * @param parallelism ͬʱscrollshard
+     */
+    public synchronized void startRefresh(long interval, TimeUnit unit, final int parallelism) {
+        stopRefresh();
+        refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "smartsearch-suggest-refresher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        refresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rebuild(parallelism);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    // ؽʧʱʹԭFST
+                    e.printStackTrace();
+                }
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * ֹ̨ͣʱؽ
+     */
+    public synchronized void stopRefresh() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    private static final class Input {
+        final String input;
+        final String output;
+        final long weight;
+
+        Input(String input, String output, long weight) {
+            this.input = input;
+            this.output = output;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * InputIteratorAnalyzingSuggesteroutputΪpayload
+     */
+    private static final class Inputs implements InputIterator {
+        private final Iterator<Input> iterator;
+        private Input current;
+
+        Inputs(List<Input> inputs) {
+            this.iterator = inputs.iterator();
+        }
+
+        @Override
+        public BytesRef next() {
+            if (!iterator.hasNext()) return null;
+            current = iterator.next();
+            return new BytesRef(current.input);
+        }
+
+        @Override
+        public long weight() {
+            return current.weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return current.output == null ? new BytesRef() : new BytesRef(current.output);
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return true;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+}
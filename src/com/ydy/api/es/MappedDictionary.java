@@ -0,0 +1,451 @@
+package com.ydy.api.es;
+
+import org.apache.lucene.analysis.Analyzer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Ԥ롢ڴӳĴʵ
+ * ͬʡͬʶͲشֱֶΪUTF-8ַֽʱ֣ݲڶ
+ * ʵʱֻӳļ̹ϵͳҳ
+ * <pre>
+ * ļʽˣ
+ * int magic, int version, int maxPhraseTokens, int tokenizerLength, tokenizer
+ *  synonyms, phrases, skipsÿΪ int count, int[count] ¼λ
+ * ¼Ϊ int keyLength, key, int valueLength, value
+ * </pre>
+ * phraseskeyΪͬʷִʺ\0ӵĶִʵͬʱ
+ * ִڱʱУʱֻphrasesвңtokenizerΪʱִʷʽİ汾ִʱΪ
+ */
+public class MappedDictionary {
+    private static final int MAGIC = 0x53534443;
+    private static final int VERSION = 2;
+
+    // иִ֮ķָ
+    private static final char SEPARATOR = '\0';
+
+    private final ByteBuffer buffer;
+    private final int maxPhraseTokens;
+    private final String tokenizerVersion;
+    private final Table synonyms;
+    private final Table phrases;
+    private final Table skips;
+
+    private MappedDictionary(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < 16 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("not a compiled dictionary or unsupported version");
+        }
+        this.maxPhraseTokens = buffer.getInt(8);
+        int tokenizerLength = buffer.getInt(12);
+        if (tokenizerLength < 0 || tokenizerLength > buffer.capacity() - 16) {
+            throw new IOException("truncated dictionary");
+        }
+        this.tokenizerVersion = tokenizerLength == 0 ? null : string(16, tokenizerLength);
+        this.synonyms = new Table(16 + tokenizerLength);
+        this.phrases = new Table(synonyms.end());
+        this.skips = new Table(phrases.end());
+    }
+
+    /**
+     * ӳõĴʵļ
+     * ļӳڼ䲻ܱԭ޸ģʱӦдļ滻compile
+     * @param fileName ʵļ
+     * @return ʵ
+     * @throws IOException ļʧܻʽȷ
+     */
+    public static MappedDictionary open(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedDictionary(buffer);
+        }
+    }
+
+    /**
+     * ڷִʽƥͬʣSynonymMatcherĽһ£
+     * λãͬһλȳ
+     * @param keywords ķִ
+     * @return еͬʶӦֶ
+     */
+    public List<String> match(List<String> keywords) {
+        if (phrases.count == 0) return Collections.emptyList();
+        List<String> res = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int end = 0; end < keywords.size(); end++) {
+            for (int start = Math.max(0, end - maxPhraseTokens + 1); start <= end; start++) {
+                sb.setLength(0);
+                for (int i = start; i <= end; i++) {
+                    if (i > start) sb.append(SEPARATOR);
+                    sb.append(keywords.get(i));
+                }
+                int found = phrases.find(bytes(sb.toString()));
+                if (found >= 0) res.add(phrases.value(found));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return ʱִʷʽİ汾ʱִʷnull
+     */
+    public String tokenizerVersion() {
+        return tokenizerVersion;
+    }
+
+    /**
+     * @param field ֶ
+     * @return Ƿ񲻻شֶ
+     */
+    public boolean isSkip(String field) {
+        return field != null && skips.find(bytes(field)) >= 0;
+    }
+
+    /**
+     * @return ͬ <ͬʣֶ> ֻͼΪ
+     */
+    public Map<String, String> synonyms() {
+        return new AbstractMap<String, String>() {
+            @Override
+            public String get(Object key) {
+                if (!(key instanceof String)) return null;
+                int found = synonyms.find(bytes((String) key));
+                return found < 0 ? null : synonyms.value(found);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size() {
+                return synonyms.count;
+            }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return new AbstractSet<Entry<String, String>>() {
+                    @Override
+                    public Iterator<Entry<String, String>> iterator() {
+                        return new IndexIterator<Entry<String, String>>(synonyms.count) {
+                            @Override
+                            Entry<String, String> get(int i) {
+                                return new SimpleImmutableEntry<>(synonyms.key(i), synonyms.value(i));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return synonyms.count;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return شֶֻͼΪ
+     */
+    public Set<String> skips() {
+        return new AbstractSet<String>() {
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && isSkip((String) o);
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new IndexIterator<String>(skips.count) {
+                    @Override
+                    String get(int i) {
+                        return skips.key(i);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return skips.count;
+            }
+        };
+    }
+
+    /**
+     * һkeyַ
+     */
+    private final class Table {
+        private final int offsets;
+        private final int count;
+
+        Table(int position) throws IOException {
+            if (position < 0 || position > buffer.capacity() - 4) throw new IOException("truncated dictionary");
+            this.count = buffer.getInt(position);
+            this.offsets = position + 4;
+            if (count < 0 || offsets + 4L * count > buffer.capacity()) {
+                throw new IOException("truncated dictionary");
+            }
+        }
+
+        int end() {
+            return offsets + count * 4;
+        }
+
+        /**
+         * @return keyڵ±꣬ʱ-1
+         */
+        int find(byte[] key) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareKey(mid, key);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        private int compareKey(int i, byte[] key) {
+            int record = buffer.getInt(offsets + i * 4);
+            int length = buffer.getInt(record);
+            int n = Math.min(length, key.length);
+            for (int j = 0; j < n; j++) {
+                int cmp = (buffer.get(record + 4 + j) & 0xFF) - (key[j] & 0xFF);
+                if (cmp != 0) return cmp;
+            }
+            return length - key.length;
+        }
+
+        String key(int i) {
+            return string(buffer.getInt(offsets + i * 4));
+        }
+
+        String value(int i) {
+            int record = buffer.getInt(offsets + i * 4);
+            return string(record + 4 + buffer.getInt(record));
+        }
+
+        private String string(int position) {
+            return MappedDictionary.this.string(position + 4, buffer.getInt(position));
+        }
+    }
+
+    private String string(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private abstract static class IndexIterator<T> implements Iterator<T> {
+        private final int count;
+        private int next;
+
+        IndexIterator(int count) {
+            this.count = count;
+        }
+
+        abstract T get(int i);
+
+        @Override
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        @Override
+        public T next() {
+            if (next >= count) throw new NoSuchElementException();
+            return get(next++);
+        }
+    }
+
+    /**
+     * ıʵɶƴʵ
+     * дʱļٸ滻ӳļʵӰ
+     * @param synonymsFile ͬļÿΪ"ֶ ͬ ͬ..."
+     * @param skipsFile شֶļÿһֶ
+     * @param outputFile Ķƴʵ
+     * @param tokenizer ͬʷִʣƥִʺΪʵͬʣnullʾִ
+     * @param tokenizerVersion ִʷʽİ汾дļͷʱSmartSearch.compileSynonymsİ汾Ƚ
+     * @throws IOException дļʧ
+     */
+    public static void compile(String synonymsFile, String skipsFile, String outputFile,
+                               Function<String, List<String>> tokenizer, String tokenizerVersion) throws IOException {
+        if (tokenizer != null && (tokenizerVersion == null || tokenizerVersion.isEmpty())) {
+            throw new IllegalArgumentException("tokenizerVersion is required with a tokenizer");
+        }
+        byte[] tokenizerBytes = bytes(tokenizer == null ? "" : tokenizerVersion);
+        Map<String, String> synonyms = Dictionary.readSynonyms(synonymsFile);
+        Set<String> skips = Dictionary.readSkips(skipsFile);
+
+        List<byte[][]> synonymRecords = new ArrayList<>(synonyms.size());
+        List<byte[][]> phraseRecords = new ArrayList<>(synonyms.size());
+        int maxPhraseTokens = synonyms.isEmpty() ? 0 : 1;
+        for (Map.Entry<String, String> entry : synonyms.entrySet()) {
+            byte[] value = bytes(entry.getValue());
+            byte[] key = bytes(entry.getKey());
+            synonymRecords.add(new byte[][]{key, value});
+            // ԭΪʵƥ
+            phraseRecords.add(new byte[][]{key, value});
+            if (tokenizer != null) {
+                List<String> tokens = tokenizer.apply(entry.getKey());
+                if (tokens != null && !tokens.isEmpty()) {
+                    StringBuilder sb = new StringBuilder();
+                    for (String token : tokens) {
+                        if (sb.length() > 0) sb.append(SEPARATOR);
+                        sb.append(token);
+                    }
+                    phraseRecords.add(new byte[][]{bytes(sb.toString()), value});
+                    maxPhraseTokens = Math.max(maxPhraseTokens, tokens.size());
+                }
+            }
+        }
+        List<byte[][]> skipRecords = new ArrayList<>(skips.size());
+        for (String skip : skips) {
+            skipRecords.add(new byte[][]{bytes(skip), new byte[0]});
+        }
+
+        File output = new File(outputFile).getAbsoluteFile();
+        File tmp = File.createTempFile(output.getName(), ".tmp", output.getParentFile());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(maxPhraseTokens);
+                out.writeInt(tokenizerBytes.length);
+                out.write(tokenizerBytes);
+                List<List<byte[][]>> tables = Arrays.asList(sort(synonymRecords), sort(phraseRecords),
+                        sort(skipRecords));
+                // бͷǰ¼ں
+                long position = 16 + tokenizerBytes.length;
+                for (List<byte[][]> table : tables) {
+                    position += 4 + 4L * table.size();
+                }
+                for (List<byte[][]> table : tables) {
+                    out.writeInt(table.size());
+                    for (byte[][] record : table) {
+                        if (position > Integer.MAX_VALUE) throw new IOException("dictionary larger than 2GB");
+                        out.writeInt((int) position);
+                        position += 8 + record[0].length + record[1].length;
+                    }
+                }
+                for (List<byte[][]> table : tables) {
+                    for (byte[][] record : table) {
+                        out.writeInt(record[0].length);
+                        out.write(record[0]);
+                        out.writeInt(record[1].length);
+                        out.write(record[1]);
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * keyUTF-8ֽظkeyֻһ
+     */
+    private static List<byte[][]> sort(List<byte[][]> records) {
+        Collections.sort(records, new Comparator<byte[][]>() {
+            @Override
+            public int compare(byte[][] a, byte[][] b) {
+                return compareBytes(a[0], b[0]);
+            }
+        });
+        List<byte[][]> res = new ArrayList<>(records.size());
+        for (byte[][] record : records) {
+            if (res.isEmpty() || compareBytes(res.get(res.size() - 1)[0], record[0]) != 0) {
+                res.add(record);
+            }
+        }
+        return res;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return a.length - b.length;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * ʵй
+     * ͬļ شֶļ ļ [Luceneִ [ִʷʽİ汾]]
+     * ִָʱڱʱͬʷִʣִ뼯Ⱥķִһ£org.wltea.analyzer.lucene.IKAnalyzer
+     * 汾ĬΪִjarİ汾ִʿ±
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("usage: MappedDictionary synonymsFile skipsFile outputFile"
+                    + " [analyzerClass [tokenizerVersion]]");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Analyzer analyzer = null;
+        String tokenizerVersion = null;
+        if (args.length > 3) {
+            Class<?> analyzerClass = Class.forName(args[3]);
+            analyzer = (Analyzer) analyzerClass.newInstance();
+            if (args.length > 4) {
+                tokenizerVersion = args[4];
+            } else {
+                String implementation = analyzerClass.getPackage() == null ? null :
+                        analyzerClass.getPackage().getImplementationVersion();
+                tokenizerVersion = implementation == null ? args[3] : args[3] + ":" + implementation;
+            }
+        }
+        final Analyzer luceneAnalyzer = analyzer;
+        try {
+            compile(args[0], args[1], args[2],
+                    luceneAnalyzer == null ? null : text -> SmartSearch.analyzeLocal(luceneAnalyzer, text),
+                    tokenizerVersion);
+        } finally {
+            if (analyzer != null) analyzer.close();
+        }
+        MappedDictionary dictionary = open(args[2]);
+        System.out.println("compiled " + dictionary.synonyms.count + " synonyms, " + dictionary.phrases.count
+                + " phrases, " + dictionary.skips.count + " skips into " + args[2]
+                + (tokenizerVersion == null ? "" : " with tokenizer " + tokenizerVersion)
+                + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+}
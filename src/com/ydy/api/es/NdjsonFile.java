@@ -0,0 +1,261 @@
+package com.ydy.api.es;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ڴӳ䷽ʽȡNDJSONļÿһJSON󣩣һJSONɵ
+ * jackson-coreʽֻҳÿ¼ֽڷΧֱӽԭʼֽ
+ * NDJSONļзֳɶΣɶ̲߳н
+ */
+public class NdjsonFile {
+    /**
+     * ÿһ¼Ļص̲߳ʱᱻ
+     */
+    public interface RecordHandler {
+        /**
+         * @param source ¼ԭʼJSONֽ
+         * @param id idFieldֵδidField¼ûиֶʱΪnull
+         */
+        void onRecord(byte[] source, String id) throws Exception;
+    }
+
+    // ÿӳޣMappedByteBufferܳ2GB
+    private static final long MAX_REGION = 1L << 30;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String fileName;
+    private final String idField;
+
+    /**
+     * @param fileName ļ
+     * @param idField Ϊdoc idĶֶnullʾElasticSearchid
+     */
+    public NdjsonFile(String fileName, String idField) {
+        this.fileName = fileName;
+        this.idField = idField;
+    }
+
+    /**
+     * ļ
+     * @param parallelism н߳
+     * @param handler ÿ¼Ļص
+     * @return ¼
+     * @throws IOException ļʧܻص׳쳣
+     */
+    public long read(int parallelism, final RecordHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            final List<MappedByteBuffer> regions = split(channel, Math.max(1, parallelism));
+            if (regions.size() == 1) {
+                return parse(regions.get(0), handler);
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, regions.size()));
+            try {
+                List<Future<Long>> futures = new ArrayList<>();
+                for (final MappedByteBuffer region : regions) {
+                    futures.add(executor.submit(new Callable<Long>() {
+                        @Override
+                        public Long call() throws Exception {
+                            return parse(region, handler);
+                        }
+                    }));
+                }
+                long count = 0;
+                for (Future<Long> future : futures) {
+                    count += future.get();
+                }
+                return count;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * ڻдļзֳɶβӳ
+     * JSONʽܰзֻ֣ӳΪһ
+     */
+    private List<MappedByteBuffer> split(FileChannel channel, int parts) throws IOException {
+        long size = channel.size();
+        List<MappedByteBuffer> regions = new ArrayList<>();
+        if (size == 0) {
+            regions.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, 0));
+            return regions;
+        }
+        if (isArray(channel)) {
+            if (size > MAX_REGION) {
+                throw new IOException("JSON array file larger than " + MAX_REGION + " bytes, use NDJSON instead");
+            }
+            regions.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            return regions;
+        }
+
+        parts = (int) Math.max(parts, (size + MAX_REGION - 1) / MAX_REGION);
+        long start = 0;
+        for (int i = 1; i <= parts && start < size; i++) {
+            long end = i == parts ? size : nextLine(channel, size * i / parts);
+            if (end > start) {
+                regions.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                start = end;
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * @return pos֮һеһֽڵλ
+     */
+    private static long nextLine(FileChannel channel, long pos) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long size = channel.size();
+        while (pos < size) {
+            buffer.clear();
+            int n = channel.read(buffer, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buffer.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private static boolean isArray(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        int n = channel.read(buffer, 0);
+        for (int i = 0; i < n; i++) {
+            byte b = buffer.get(i);
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') continue;
+            // UTF-8BOM
+            if ((b & 0xFF) == 0xEF || (b & 0xFF) == 0xBB || (b & 0xFF) == 0xBF) continue;
+            return b == '[';
+        }
+        return false;
+    }
+
+    /**
+     * ʽһΣÿһĶصһ
+     */
+    private long parse(MappedByteBuffer region, RecordHandler handler) throws IOException {
+        long count = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(new ByteBufferInputStream(region.duplicate()))) {
+            // ¼ڵȣNDJSONΪ0JSONΪ1
+            int recordDepth = 0;
+            int depth = 0;
+            long start = -1;
+            String id = null;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                switch (token) {
+                    case START_ARRAY:
+                        if (depth == 0 && start < 0) {
+                            recordDepth = 1;
+                        }
+                        depth++;
+                        break;
+                    case START_OBJECT:
+                        if (depth == recordDepth) {
+                            start = parser.getTokenLocation().getByteOffset();
+                            id = null;
+                        }
+                        depth++;
+                        break;
+                    case END_ARRAY:
+                        depth--;
+                        break;
+                    case END_OBJECT:
+                        depth--;
+                        if (depth == recordDepth) {
+                            long end = parser.getCurrentLocation().getByteOffset();
+                            handler.onRecord(copy(region, start, end), id);
+                            count++;
+                            start = -1;
+                        }
+                        break;
+                    case FIELD_NAME:
+                        if (idField != null && depth == recordDepth + 1 && idField.equals(parser.getCurrentName())) {
+                            if (parser.nextToken().isScalarValue()) {
+                                id = parser.getText();
+                            } else {
+                                // idֶβǱʱԣ豣ȼ
+                                parser.skipChildren();
+                            }
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        return count;
+    }
+
+    private static byte[] copy(MappedByteBuffer region, long start, long end) {
+        // jackson 2.6бtokenλÿǰĶŻհ
+        while (start < end && region.get((int) start) != '{') {
+            start++;
+        }
+        byte[] bytes = new byte[(int) (end - start)];
+        ByteBuffer buffer = region.duplicate();
+        buffer.position((int) start);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * InputStreamȡByteBufferjackson
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.ydy.api.es;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
+import org.elasticsearch.transport.ConnectTransportException;
+import org.elasticsearch.transport.ReceiveTimeoutTransportException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ڵĽӳѡڵ
+ * ÿڵ¼ӳٵָȨƽÿȡڵ㣬ѡӳٵ͵һ
+ * ʧܵĽڵʱΪȴʱʧܴں²ѡ
+ * ͨexecuteڽڵʧʱһڵһ
+ */
+public class NodeSelector {
+    // ָȨƽȨ
+    private static final double ALPHA = 0.2;
+
+    // һʧܺȴʱ
+    private static final long BASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // ȴʱ
+    private static final long MAX_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * һڵ㼰ͳ
+     */
+    public static final class Node {
+        private final String name;
+        private final Client client;
+        private double ewmaNanos;
+        private int failures;
+        // ǷȴУnanoTime⣬unhealthyUntilΪ0ʾ
+        private boolean unhealthy;
+        private long unhealthyUntil;
+        private long requests;
+
+        Node(String name, Client client) {
+            this.name = name;
+            this.client = client;
+        }
+
+        /**
+         * @return ڵַ
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return ֻӸýڵClient
+         */
+        public Client getClient() {
+            return client;
+        }
+
+        /**
+         * @return ӳٵָȨƽλ
+         */
+        public synchronized double getLatencyMillis() {
+            return ewmaNanos / 1e6;
+        }
+
+        /**
+         * @return ǰǷ񽡿
+         */
+        public synchronized boolean isHealthy() {
+            return !unhealthy || System.nanoTime() - unhealthyUntil >= 0;
+        }
+
+        /**
+         * @return ýڵ㷢
+         */
+        public synchronized long getRequests() {
+            return requests;
+        }
+
+        synchronized void success(long nanos) {
+            requests++;
+            failures = 0;
+            unhealthy = false;
+            ewmaNanos = ewmaNanos == 0 ? nanos : ALPHA * nanos + (1 - ALPHA) * ewmaNanos;
+        }
+
+        synchronized void failure() {
+            requests++;
+            failures++;
+            long cooldown = Math.min(MAX_COOLDOWN_NANOS, BASE_COOLDOWN_NANOS << Math.min(failures - 1, 16));
+            unhealthy = true;
+            unhealthyUntil = System.nanoTime() + cooldown;
+        }
+
+        synchronized long unhealthyUntil() {
+            return unhealthyUntil;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s latency=%.2fms healthy=%s requests=%d", name, getLatencyMillis(),
+                    isHealthy(), getRequests());
+        }
+    }
+
+    private final List<Node> nodes;
+
+    /**
+     * ֻһClient絥ڵsniffClientԼѡڵ
+     * @param name 
+     * @param client Clientʵ
+     */
+    public NodeSelector(String name, Client client) {
+        this.nodes = Collections.singletonList(new Node(name, client));
+    }
+
+    /**
+     * @param names ڵַ
+     * @param clients namesһһӦÿֻһڵClient
+     */
+    public NodeSelector(List<String> names, List<Client> clients) {
+        List<Node> list = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            list.add(new Node(names.get(i), clients.get(i)));
+        }
+        this.nodes = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * ѡһڵ
+     * @return ڵ
+     */
+    public Node select() {
+        int n = nodes.size();
+        if (n == 1) return nodes.get(0);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Node a = nodes.get(random.nextInt(n));
+        Node b = nodes.get(random.nextInt(n - 1));
+        if (b == a) b = nodes.get(n - 1);
+
+        boolean healthyA = a.isHealthy();
+        boolean healthyB = b.isHealthy();
+        if (healthyA && healthyB) {
+            return a.getLatencyMillis() <= b.getLatencyMillis() ? a : b;
+        }
+        if (healthyA) return a;
+        if (healthyB) return b;
+
+        // ʱһڵ㣬ѡָ
+        Node best = null;
+        for (Node node : nodes) {
+            if (node.isHealthy()) {
+                if (best == null || node.getLatencyMillis() < best.getLatencyMillis()) best = node;
+            }
+        }
+        if (best != null) return best;
+        for (Node node : nodes) {
+            if (best == null || node.unhealthyUntil() - best.unhealthyUntil() < 0) best = node;
+        }
+        return best;
+    }
+
+    /**
+     * ѡʧܽڵ֮һڵ㣬
+     * @param failed ʧܵĽڵ
+     * @return ڵ㣬ֻһڵʱnull
+     */
+    Node selectOther(Node failed) {
+        Node best = null;
+        for (Node node : nodes) {
+            if (node == failed || !node.isHealthy()) continue;
+            if (best == null || node.getLatencyMillis() < best.getLatencyMillis()) best = node;
+        }
+        if (best != null) return best;
+        for (Node node : nodes) {
+            if (node == failed) continue;
+            if (best == null || node.unhealthyUntil() - best.unhealthyUntil() < 0) best = node;
+        }
+        return best;
+    }
+
+    /**
+     * ڽڵϷһ
+     * @param <T> Ӧ
+     */
+    public interface Call<T> {
+        /**
+         * @param client ѡڵClient
+         * @param listener ص
+         */
+        void execute(Client client, ActionListener<T> listener);
+    }
+
+    /**
+     * ѡĽڵϷ󣬼¼ýڵĺʱͽ
+     * ڵʧʱһڵһΣظִУͷִ
+     * @param call 
+     * @param listener ص
+     */
+    public <T> void execute(final Call<T> call, final ActionListener<T> listener) {
+        final Node node = select();
+        call.execute(node.getClient(), track(node, new ActionListener<T>() {
+            @Override
+            public void onResponse(T response) {
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                Node other = isNodeFailure(throwable) ? selectOther(node) : null;
+                if (other == null) {
+                    listener.onFailure(throwable);
+                    return;
+                }
+                call.execute(other.getClient(), track(other, listener));
+            }
+        }));
+    }
+
+    /**
+     * ¼һĽ
+     * 쳣ǽڵ㲻쳣˵ڵӦɹ¼ӳ
+     * @param node ڵ
+     * @param nanos ʱλ
+     * @param failure 쳣ɹʱΪnull
+     */
+    public void record(Node node, long nanos, Throwable failure) {
+        if (failure != null && isNodeFailure(failure)) {
+            node.failure();
+        } else {
+            node.success(nanos);
+        }
+    }
+
+    /**
+     * @return нڵ
+     */
+    public List<Node> nodes() {
+        return nodes;
+    }
+
+    /**
+     * װصʱ¼ýڵĺʱͽ
+     * @param node Ľڵ
+     * @param listener ԭص
+     * @return װĻص
+     */
+    public <T> ActionListener<T> track(final Node node, final ActionListener<T> listener) {
+        final long start = System.nanoTime();
+        return new ActionListener<T>() {
+            @Override
+            public void onResponse(T response) {
+                record(node, System.nanoTime() - start, null);
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                record(node, System.nanoTime() - start, throwable);
+                listener.onFailure(throwable);
+            }
+        };
+    }
+
+    private static boolean isNodeFailure(Throwable failure) {
+        return ExceptionsHelper.unwrap(failure, ConnectTransportException.class, NoNodeAvailableException.class,
+                ReceiveTimeoutTransportException.class) != null;
+    }
+}
@@ -0,0 +1,148 @@
+package com.ydy.api.es;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * shardscrollindex/typeÿshardһ߳
+ * ÿֻһҳڴҳСȣindexС޹
+ */
+public class ParallelScroll {
+    /**
+     * ÿȡһҳĻصͬshardҳᱻ
+     */
+    public interface PageHandler {
+        /**
+         * @param hits һҳ
+         */
+        void onPage(SearchHit[] hits) throws Exception;
+    }
+
+    private final Client client;
+    private final String index;
+    private final String type;
+    private final QueryBuilder query;
+    private final int pageSize;
+    private final TimeValue keepAlive;
+    private final String[] sourceIncludes;
+
+    /**
+     * @param client Clientʵ
+     * @param index index
+     * @param type typenullʾtype
+     * @param query ѯnullʾȫdoc
+     * @param pageSize ÿshardÿҳٸ
+     * @param keepAlive ҳ֮scrollıʱ
+     */
+    public ParallelScroll(Client client, String index, String type, QueryBuilder query,
+                          int pageSize, TimeValue keepAlive) {
+        this(client, index, type, query, pageSize, keepAlive, null);
+    }
+
+    /**
+     * @param client Clientʵ
+     * @param index index
+     * @param type typenullʾtype
+     * @param query ѯnullʾȫdoc
+     * @param pageSize ÿshardÿҳٸ
+     * @param keepAlive ҳ֮scrollıʱ
+     * @param sourceIncludes ֻȡص_sourceֶΣnullʾȫȡ
+     */
+    public ParallelScroll(Client client, String index, String type, QueryBuilder query,
+                          int pageSize, TimeValue keepAlive, String[] sourceIncludes) {
+        this.client = client;
+        this.index = index;
+        this.type = type;
+        this.query = query;
+        this.pageSize = pageSize;
+        this.keepAlive = keepAlive;
+        this.sourceIncludes = sourceIncludes;
+    }
+
+    /**
+     * scrollshard
+     * @param parallelism ͬʱscrollshard
+     * @param handler ÿҳĻص
+     * @return Ľ
+     * @throws ExecutionException һshardʧ
+     * @throws InterruptedException ȴʱж
+     */
+    public long run(int parallelism, final PageHandler handler) throws ExecutionException, InterruptedException {
+        int shards = shardCount();
+        if (shards == 0) return 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, shards)));
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < shards; i++) {
+                final int shard = i;
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return scrollShard(shard, handler);
+                    }
+                }));
+            }
+            long count = 0;
+            for (Future<Long> future : futures) {
+                count += future.get();
+            }
+            return count;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return 漰shard
+     */
+    private int shardCount() {
+        SearchRequestBuilder builder = client.prepareSearch(index).setSize(0);
+        if (type != null) builder.setTypes(type);
+        if (query != null) builder.setQuery(query);
+        return builder.get().getTotalShards();
+    }
+
+    /**
+     * scrollһshardpreference޶ֻshard
+     */
+    private long scrollShard(int shard, PageHandler handler) throws Exception {
+        SearchRequestBuilder builder = client.prepareSearch(index)
+                .setPreference("_shards:" + shard)
+                .setScroll(keepAlive)
+                .setSize(pageSize)
+                // _docscrollҪֺ
+                .addSort("_doc", SortOrder.ASC);
+        if (type != null) builder.setTypes(type);
+        if (query != null) builder.setQuery(query);
+        if (sourceIncludes != null) builder.setFetchSource(sourceIncludes, null);
+
+        SearchResponse res = builder.get();
+        String scrollId = res.getScrollId();
+        long count = 0;
+        try {
+            while (res.getHits().getHits().length > 0) {
+                handler.onPage(res.getHits().getHits());
+                count += res.getHits().getHits().length;
+                res = client.prepareSearchScroll(scrollId).setScroll(keepAlive).get();
+                scrollId = res.getScrollId();
+            }
+        } finally {
+            client.prepareClearScroll().addScrollId(scrollId).get();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,134 @@
+package com.ydy.api.es;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.elasticsearch.common.bytes.BytesReference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ѹѯĻ棬(ѯʽ, ֶ, ִ, ִȨ)лĲѯ
+ * ظķִʲ¹лѯ
+ */
+public class QueryCache {
+    private final Cache<Key, BytesReference> cache;
+
+    /**
+     * @param maxSize ໺ٸѯ
+     */
+    public QueryCache(long maxSize) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * ѯ
+     * @param mode ѯʽ
+     * @param queryTerm ֶ
+     * @param keywords ķִ
+     * @return лĲѯδзnull
+     */
+    public BytesReference get(SmartSearch.QueryMode mode, String queryTerm, List<String> keywords) {
+        return get(mode, queryTerm, keywords, null);
+    }
+
+    /**
+     * ѯ
+     * @param mode ѯʽ
+     * @param queryTerm ֶ
+     * @param keywords ķִ
+     * @param boosts ִʵȨأnullձʾΪ1
+     * @return лĲѯδзnull
+     */
+    public BytesReference get(SmartSearch.QueryMode mode, String queryTerm, List<String> keywords,
+                              Map<String, Float> boosts) {
+        return cache.getIfPresent(new Key(mode, queryTerm, keywords, boosts));
+    }
+
+    /**
+     * д뻺
+     * @param mode ѯʽ
+     * @param queryTerm ֶ
+     * @param keywords ķִ
+     * @param query лĲѯ
+     */
+    public void put(SmartSearch.QueryMode mode, String queryTerm, List<String> keywords, BytesReference query) {
+        put(mode, queryTerm, keywords, null, query);
+    }
+
+    /**
+     * д뻺
+     * @param mode ѯʽ
+     * @param queryTerm ֶ
+     * @param keywords ķִ
+     * @param boosts ִʵȨأnullձʾΪ1
+     * @param query лĲѯ
+     */
+    public void put(SmartSearch.QueryMode mode, String queryTerm, List<String> keywords, Map<String, Float> boosts,
+                    BytesReference query) {
+        cache.put(new Key(mode, queryTerm, new ArrayList<>(keywords),
+                boosts == null || boosts.isEmpty() ? null : new HashMap<>(boosts)), query);
+    }
+
+    /**
+     * ջ
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return ǰ
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return ͳƣʡ̭
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static final class Key {
+        private final SmartSearch.QueryMode mode;
+        private final String queryTerm;
+        private final List<String> keywords;
+        private final Map<String, Float> boosts;
+        private final int hash;
+
+        Key(SmartSearch.QueryMode mode, String queryTerm, List<String> keywords, Map<String, Float> boosts) {
+            this.mode = mode;
+            this.queryTerm = queryTerm;
+            this.keywords = keywords;
+            this.boosts = boosts == null ? Collections.<String, Float>emptyMap() : boosts;
+            int h = mode.hashCode();
+            h = 31 * h + queryTerm.hashCode();
+            h = 31 * h + keywords.hashCode();
+            h = 31 * h + this.boosts.hashCode();
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && mode == key.mode && queryTerm.equals(key.queryTerm)
+                    && keywords.equals(key.keywords) && boosts.equals(key.boosts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
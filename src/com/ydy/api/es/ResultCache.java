@@ -0,0 +1,210 @@
+package com.ydy.api.es;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import org.elasticsearch.search.SearchHit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ʴĻ
+ * (index, type, ִ, size, from, explain, Ƿ_source)棬ڻ򳬹ڴʱ̭
+ * ÿindexindex/typeһʧЧʱһʼǰȡõĴѹʱĽд뻺
+ */
+public class ResultCache {
+    private final Cache<Key, SmartSearch.SearchResult> cache;
+
+    // ʧЧĴ <indexindex/type>
+    private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    // ȫʧЧĴ
+    private final AtomicLong allGeneration = new AtomicLong();
+
+    /**
+     * @param ttl Чʱ
+     * @param unit ʱ䵥λ
+     * @param maxBytes ռڴĹޣλֽ
+     */
+    public ResultCache(long ttl, TimeUnit unit, long maxBytes) {
+        cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, unit)
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<Key, SmartSearch.SearchResult>() {
+                    @Override
+                    public int weigh(Key key, SmartSearch.SearchResult value) {
+                        return estimateBytes(value);
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * ѯ
+     * @param index index
+     * @param type type
+     * @param keywords ķִ
+     * @param size һҳٸ
+     * @param from ڼҳ
+     * @param explain Ƿ񷵻شֽ
+     * @param filtering ǷֻȡĿֶε_source˵Ľ_sourcejsonΪnullδ˵Ľ
+     * @return highlightsΪεķִʣδзnull
+     */
+    public SmartSearch.SearchResult get(String index, String type, List<String> keywords,
+                                        int size, int from, boolean explain, boolean filtering) {
+        SmartSearch.SearchResult cached = cache.getIfPresent(
+                new Key(index, type, keywords, size, from, explain, filtering));
+        if (cached == null) return null;
+        // answersһݣ޸Ļ
+        return new SmartSearch.SearchResult(keywords, new HashMap<>(cached.answers), cached.response, cached.json,
+                cached.metrics);
+    }
+
+    /**
+     * index/typeǰĴڷǰãд뻺ʱput
+     * @param index index
+     * @param type type
+     * @return indexindex/typeʧЧ仯
+     */
+    public long generation(String index, String type) {
+        return allGeneration.get() + counter(index).get() + counter(index + "/" + type).get();
+    }
+
+    /**
+     * д뻺
+     * ڼindex/typeʧЧʱд룬ʧЧǰȡõľɽʧЧ󱻻
+     * @param generation ǰgenerationȡõĴ
+     */
+    public void put(String index, String type, List<String> keywords, int size, int from, boolean explain,
+                    boolean filtering, long generation, SmartSearch.SearchResult result) {
+        if (generation(index, type) != generation) return;
+        Key key = new Key(index, type, keywords, size, from, explain, filtering);
+        cache.put(key, new SmartSearch.SearchResult(keywords, new HashMap<>(result.answers), result.response,
+                result.json, result.metrics));
+        // д֮䷢ʧЧûп棬ټһ
+        if (generation(index, type) != generation) cache.invalidate(key);
+    }
+
+    /**
+     * ʹĳindex/typeµĻȫʧЧݸº
+     * @param index index
+     * @param type typenullʾindextype
+     */
+    public void invalidate(String index, String type) {
+        counter(type == null ? index : index + "/" + type).incrementAndGet();
+        Iterator<Key> iter = cache.asMap().keySet().iterator();
+        while (iter.hasNext()) {
+            Key key = iter.next();
+            if (key.index.equals(index) && (type == null || key.type.equals(type))) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * ջ
+     */
+    public void invalidateAll() {
+        allGeneration.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private AtomicLong counter(String key) {
+        AtomicLong counter = generations.get(key);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = generations.putIfAbsent(key, created);
+            if (counter == null) counter = created;
+        }
+        return counter;
+    }
+
+    /**
+     * @return ǰ
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return ͳƣʡ̭
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * һռõڴ
+     * SearchResponseJSONСͬףJSONȵ4Թ
+     * JSONȾʱ_sourceֽ4
+     */
+    private static int estimateBytes(SmartSearch.SearchResult result) {
+        long bytes = 256;
+        if (result.json != null) {
+            bytes += 4L * result.json.length();
+        } else if (result.response != null) {
+            for (SearchHit hit : result.response.getHits().getHits()) {
+                bytes += 256;
+                if (hit.sourceRef() != null) {
+                    bytes += 4L * hit.sourceRef().length();
+                }
+            }
+        }
+        bytes += 64L * result.answers.size();
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static final class Key {
+        private final String index;
+        private final String type;
+        private final List<String> keywords;
+        private final int size;
+        private final int from;
+        private final boolean explain;
+        private final boolean filtering;
+        private final int hash;
+
+        Key(String index, String type, List<String> keywords, int size, int from, boolean explain,
+            boolean filtering) {
+            this.index = index;
+            this.type = type;
+            // ִɵͬʰ˳ƥ䣬ִ˳ͬʱʴĿֶοܲͬ
+            this.keywords = new ArrayList<>(keywords);
+            this.size = size;
+            this.from = from;
+            this.explain = explain;
+            this.filtering = filtering;
+            int h = index.hashCode();
+            h = 31 * h + type.hashCode();
+            h = 31 * h + this.keywords.hashCode();
+            h = 31 * h + size;
+            h = 31 * h + from;
+            h = 31 * h + (explain ? 1 : 0);
+            h = 31 * h + (filtering ? 1 : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && size == key.size && from == key.from && explain == key.explain
+                    && filtering == key.filtering
+                    && index.equals(key.index) && type.equals(key.type) && keywords.equals(key.keywords);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ydy.api.es;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * scrollҳһȫ˳һ
+ * ÿֻһҳڴҳСȣ޹
+ * Զͷscrollģ;ֹͣclose()
+ */
+public class SearchCursor implements Iterator<SearchHit>, Closeable {
+    private final Client client;
+    private final TimeValue keepAlive;
+
+    private String scrollId;
+    private SearchHit[] hits;
+    private int position;
+    private final long totalHits;
+    private boolean closed;
+
+    /**
+     * һҳ
+     * @param client Clientʵ
+     * @param builder setSizeΪÿҳС
+     * @param keepAlive ҳ֮scrollıʱ
+     */
+    public SearchCursor(Client client, SearchRequestBuilder builder, TimeValue keepAlive) {
+        this.client = client;
+        this.keepAlive = keepAlive;
+        SearchResponse res = builder.setScroll(keepAlive).get();
+        this.scrollId = res.getScrollId();
+        this.hits = res.getHits().getHits();
+        this.totalHits = res.getHits().getTotalHits();
+    }
+
+    /**
+     * @return еĽ
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) return false;
+        if (position < hits.length) return true;
+        if (hits.length > 0) {
+            // ǰҳѱ꣬ȡһҳ
+            SearchResponse res = client.prepareSearchScroll(scrollId).setScroll(keepAlive).get();
+            scrollId = res.getScrollId();
+            hits = res.getHits().getHits();
+            position = 0;
+        }
+        if (hits.length == 0) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public SearchHit next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return hits[position++];
+    }
+
+    /**
+     * @return ˳رʱͷscroll
+     */
+    public Stream<SearchHit> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    /**
+     * ͷscrollģظ
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        hits = new SearchHit[0];
+        if (scrollId != null) {
+            client.prepareClearScroll().addScrollId(scrollId).get();
+        }
+    }
+}
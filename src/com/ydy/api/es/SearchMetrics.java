@@ -0,0 +1,214 @@
+package com.ydy.api.es;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ʴ׶εӳֱͼ
+ * ¼ʱȡʱźϲɶʱlog4j
+ */
+public class SearchMetrics {
+    private static final Logger LOGGER = Logger.getLogger(SearchMetrics.class);
+
+    /**
+     * ʴĸ׶
+     */
+    public enum Stage {
+        // ִʣҺͼȺ
+        ANALYZE,
+        // ļȺ
+        SEARCH,
+        // ʴвĿֶ
+        QA,
+        // ȾΪJSON
+        RENDER,
+        // һʴܺʱ
+        TOTAL
+    }
+
+    private final Map<Stage, Recorder> recorders = new EnumMap<>(Stage.class);
+    private final Map<Stage, Histogram> latencies = new EnumMap<>(Stage.class);
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder emptyResults = new LongAdder();
+    private final LongAdder answered = new LongAdder();
+    private final LongAdder answers = new LongAdder();
+
+    private long resetMillis = System.currentTimeMillis();
+
+    private ScheduledExecutorService logger;
+
+    SearchMetrics() {
+        for (Stage stage : Stage.values()) {
+            recorders.put(stage, new Recorder(3));
+            latencies.put(stage, new Histogram(3));
+        }
+    }
+
+    /**
+     * ¼һ׶εĺʱ
+     * @param stage ׶
+     * @param startNanos ׶οʼʱSystem.nanoTime()ֵ
+     */
+    public void record(Stage stage, long startNanos) {
+        record(stage, startNanos, 1);
+    }
+
+    /**
+     * ¼ͬһ׶ΣһMultiSearchÿһ
+     * @param stage ׶
+     * @param startNanos ׶οʼʱSystem.nanoTime()ֵ
+     * @param count 
+     */
+    public void record(Stage stage, long startNanos, int count) {
+        if (count <= 0) return;
+        recorders.get(stage).recordValueWithCount(
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos), count);
+    }
+
+    /**
+     * װصʱ¼ý׶εĺʱ
+     * @param stage ׶
+     * @param listener ԭص
+     * @return װĻص
+     */
+    public <T> ActionListener<T> time(Stage stage, ActionListener<T> listener) {
+        return time(stage, 1, listener);
+    }
+
+    /**
+     * װõĻصʱΪÿ¼һθý׶εĺʱ
+     * @param stage ׶
+     * @param count 
+     * @param listener ԭص
+     * @return װĻص
+     */
+    public <T> ActionListener<T> time(final Stage stage, final int count, final ActionListener<T> listener) {
+        final long start = System.nanoTime();
+        return new ActionListener<T>() {
+            @Override
+            public void onResponse(T response) {
+                record(stage, start, count);
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                record(stage, start, count);
+                listener.onFailure(throwable);
+            }
+        };
+    }
+
+    /**
+     * ¼һʴ
+     */
+    public void query() {
+        queries.increment();
+    }
+
+    /**
+     * ¼һν
+     */
+    public void cacheHit() {
+        cacheHits.increment();
+    }
+
+    /**
+     * ¼һΪ
+     */
+    public void emptyResult() {
+        emptyResults.increment();
+    }
+
+    /**
+     * ¼һʴĻش
+     * @param count ҵĻشֶ
+     */
+    public void answers(int count) {
+        if (count > 0) {
+            answered.increment();
+            answers.add(count);
+        }
+    }
+
+    /**
+     * @return Դϴͳƿ
+     */
+    public SearchStats snapshot() {
+        return snapshot(false);
+    }
+
+    /**
+     * ͳƿղã֮Ŀֻ˺ļ¼
+     * @return Դϴͳƿ
+     */
+    public SearchStats snapshotAndReset() {
+        return snapshot(true);
+    }
+
+    private synchronized SearchStats snapshot(boolean reset) {
+        Map<Stage, Histogram> copies = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            Histogram latency = latencies.get(stage);
+            latency.add(recorders.get(stage).getIntervalHistogram());
+            copies.put(stage, latency.copy());
+            if (reset) latency.reset();
+        }
+        long now = System.currentTimeMillis();
+        SearchStats stats;
+        if (reset) {
+            stats = new SearchStats(queries.sumThenReset(), cacheHits.sumThenReset(), emptyResults.sumThenReset(),
+                    answered.sumThenReset(), answers.sumThenReset(), now - resetMillis, copies);
+            resetMillis = now;
+        } else {
+            stats = new SearchStats(queries.sum(), cacheHits.sum(), emptyResults.sum(), answered.sum(),
+                    answers.sum(), now - resetMillis, copies);
+        }
+        return stats;
+    }
+
+    /**
+     * ʱÿintervalINFOһθͳƲ
+     * @param interval 
+     * @param unit ʱ䵥λ
+     */
+    public synchronized void startLogging(long interval, TimeUnit unit) {
+        stopLogging();
+        logger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "smartsearch-metrics-logger");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        logger.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                LOGGER.info(snapshotAndReset());
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * ֹͣʱ
+     */
+    public synchronized void stopLogging() {
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+        }
+    }
+}
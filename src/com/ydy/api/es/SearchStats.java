@@ -0,0 +1,81 @@
+package com.ydy.api.es;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+
+/**
+ * ʴͳƿ
+ */
+public class SearchStats {
+    // ʴĴ
+    public final long queries;
+
+    // д
+    public final long cacheHits;
+
+    // ΪյĴ
+    public final long emptyResults;
+
+    // ҵһشĴ
+    public final long answered;
+
+    // ҵĻشֶ
+    public final long answers;
+
+    // ͳʱλ
+    public final long elapsedMillis;
+
+    // ׶εӳ٣λ΢
+    private final Map<SearchMetrics.Stage, Histogram> latencies;
+
+    SearchStats(long queries, long cacheHits, long emptyResults, long answered, long answers, long elapsedMillis,
+                Map<SearchMetrics.Stage, Histogram> latencies) {
+        this.queries = queries;
+        this.cacheHits = cacheHits;
+        this.emptyResults = emptyResults;
+        this.answered = answered;
+        this.answers = answers;
+        this.elapsedMillis = elapsedMillis;
+        this.latencies = latencies;
+    }
+
+    /**
+     * @param stage ׶
+     * @return ý׶εӳֱͼλ΢
+     */
+    public Histogram latency(SearchMetrics.Stage stage) {
+        return latencies.get(stage);
+    }
+
+    /**
+     * @param stage ׶
+     * @param percentile ٷλ99.0
+     * @return ý׶ӳٵİٷλλ
+     */
+    public double latencyMillis(SearchMetrics.Stage stage, double percentile) {
+        return latencies.get(stage).getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * @return ƽÿʴĴ
+     */
+    public double queriesPerSecond() {
+        return elapsedMillis == 0 ? 0 : queries * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format(
+                "queries=%d qps=%.1f cacheHits=%d empty=%d answered=%d answers=%d",
+                queries, queriesPerSecond(), cacheHits, emptyResults, answered, answers));
+        for (SearchMetrics.Stage stage : SearchMetrics.Stage.values()) {
+            Histogram latency = latencies.get(stage);
+            if (latency.getTotalCount() == 0) continue;
+            sb.append(String.format(" %s(ms) n=%d p50=%.1f p99=%.1f max=%.1f", stage.name().toLowerCase(),
+                    latency.getTotalCount(), latencyMillis(stage, 50), latencyMillis(stage, 99),
+                    latency.getMaxValue() / 1000.0));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.ydy.api.es;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ϲͬkeyĲͬһʱÿkeyֻһִУ߹Ľ
+ * ɺƳ֮ĵִУ
+ * ConcurrentHashMapputIfAbsentͬkey֮䲻ͬһ
+ * @param <K> keyʵequalshashCode
+ * @param <V> 
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+
+    // ϲĵô
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * ִͬkeyִʱֱӷFuture
+     * @param key key
+     * @param call ֻûͬkeyִʱ
+     * @return Future߹Ҫ޸Ľ
+     */
+    public CompletableFuture<V> execute(final K key, Supplier<CompletableFuture<V>> call) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        try {
+            call.get().whenComplete((value, throwable) -> {
+                // Ƴɣ֮󵽴ĵûᷢµ
+                inflight.remove(key, future);
+                if (throwable != null) {
+                    future.completeExceptionally(throwable);
+                } else {
+                    future.complete(value);
+                }
+            });
+        } catch (Throwable t) {
+            inflight.remove(key, future);
+            future.completeExceptionally(t);
+        }
+        return future;
+    }
+
+    /**
+     * @return ִе
+     */
+    public int inflight() {
+        return inflight.size();
+    }
+
+    /**
+     * @return ϲδִеĵô
+     */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+}
@@ -1,47 +1,129 @@
 package com.ydy.api.es;
 
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.analyze.AnalyzeRequest;
 import org.elasticsearch.action.admin.indices.analyze.AnalyzeResponse;
 import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.action.suggest.SuggestRequestBuilder;
 import org.elasticsearch.action.suggest.SuggestResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.MatchQueryBuilder;
+import org.elasticsearch.index.query.MultiMatchQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
 import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.search.suggest.Suggest;
 import org.elasticsearch.search.suggest.completion.CompletionSuggestionBuilder;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 /**
  * Created by ydy on 2017/7/10.
  */
 public class SmartSearch {
+    private static final Logger LOGGER = Logger.getLogger(SmartSearch.class);
+
     // ElasticSearchʵ
     private Client client;
 
-    // ʴֶͬ <ͬʣֶ>
-    private Map<String, String> synonyms;
+    // ͷִ󰴽ڵӳѡĽڵ
+    private NodeSelector nodes;
+
+    // ʴֶͬʼشֶɰindex/typeֱã仯󻺴ĻشʧЧ
+    private final DictionaryManager dictionaries = new DictionaryManager(this::invalidateResultCache);
+
+    // ִʽ棬nullʾ
+    private volatile AnalyzeCache analyzeCache;
+
+    // طִ <ִͣLuceneִ>ע÷ִͲȺ
+    private final Map<String, Analyzer> localAnalyzers = new ConcurrentHashMap<>();
+
+    // ʴ棬nullʾ
+    private volatile ResultCache resultCache;
+
+    // ʴǷȶԽֶһαÿֶO(1)
+    private volatile boolean qaFieldIndex;
+
+    // ʴǰвĿֶΣ1ʾֻҵһ
+    private volatile int qaTopK = 1;
+
+    // ǰввҵ̳߳أnullʾβ
+    private volatile Executor qaTopKExecutor;
+
+    // ĬϵĲѯʽ
+    private volatile QueryMode queryMode = QueryMode.PHRASE_CLAUSES;
+
+    // ѹѯĻ棬nullʾ
+    private volatile QueryCache queryCache;
+
+    // ʴǷֻȡĿֶε_sourceȾJSON
+    private volatile boolean sourceFiltering;
+
+    // ʴ׶εӳټ
+    private final SearchMetrics metrics = new SearchMetrics();
+
+    // ʴ̵Ĳ٣ĬϹر
+    private final Tracer tracer = new Tracer("com.ydy.api.es.trace");
+
+    // Զȫ <index/fieldFST>עֶεĲȫȺ
+    private final Map<String, LocalSuggester> localSuggesters = new ConcurrentHashMap<>();
+
+    // ϲͬĲȫ
+    private final SingleFlight<List<Object>, List<String>> suggestFlights = new SingleFlight<>();
+
+    // ϲͬĲʴnullʾϲ
+    private volatile SingleFlight<List<Object>, SearchResult> searchFlights;
 
-    // ʴвشֶ
-    private Set<String> skips;
+    // ĵƵʲüȫֶķִʣnullʾü
+    private volatile KeywordPruner keywordPruner;
 
     /**
      * һSmartSearchʵElasticSearchȺ
@@ -64,48 +146,163 @@ public class SmartSearch {
             return;
         }
 
-        synonyms = new HashMap<>();
-        skips = new HashSet<>();
-
         try {
             Settings settings = Settings.settingsBuilder()
                     .put("cluster.name", clusterName).build();
 
             client = TransportClient.builder().settings(settings).build()
                     .addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(ip), transport));
+            nodes = new NodeSelector(ip + ":" + transport, client);
         } catch (Exception e) {
             e.printStackTrace();
         }
 
-        try(BufferedReader br = new BufferedReader(new FileReader("synonyms.txt"))) {
-            String line = br.readLine();
+        loadDefaultDictionary();
+    }
 
-            while (line != null) {
-                String[] splits = line.split(" ");
-                if (splits.length > 1) {
-                    for (int i = 1; i < splits.length; i++) {
-                        synonyms.put(splits[i], splits[0]);
-                    }
+    /**
+     * һӶڵSmartSearchʵ
+     * sniffʱClientּȺڵ㲢ѯÿڵ㵥ӣ
+     * ͷִ󰴸ڵӳѡڵ㣬ʧܵĽڵʱ
+     * @param addresses ڵַʽΪ"host""host:port"portĬ9300
+     * @param clusterName ElasticSearchȺ
+     * @param sniff ǷԶּȺеڵ
+     */
+    public SmartSearch(List<String> addresses, String clusterName, boolean sniff) {
+        if (addresses == null || addresses.isEmpty() || clusterName == null ||
+                clusterName.length() == 0) {
+            return;
+        }
+
+        try {
+            Settings settings = Settings.settingsBuilder()
+                    .put("cluster.name", clusterName)
+                    .put("client.transport.sniff", sniff).build();
+
+            List<InetSocketTransportAddress> transportAddresses = new ArrayList<>();
+            for (String address : addresses) {
+                transportAddresses.add(toTransportAddress(address));
+            }
+
+            TransportClient transportClient = TransportClient.builder().settings(settings).build();
+            for (InetSocketTransportAddress address : transportAddresses) {
+                transportClient.addTransportAddress(address);
+            }
+            client = transportClient;
+
+            if (sniff || addresses.size() == 1) {
+                nodes = new NodeSelector(addresses.get(0), client);
+            } else {
+                // ÿClientֻһڵ㣬NodeSelectorڽڵ֮ѡ
+                Settings nodeSettings = Settings.settingsBuilder()
+                        .put("cluster.name", clusterName).build();
+                List<Client> clients = new ArrayList<>();
+                for (InetSocketTransportAddress address : transportAddresses) {
+                    clients.add(TransportClient.builder().settings(nodeSettings).build()
+                            .addTransportAddress(address));
                 }
-                line = br.readLine();
+                nodes = new NodeSelector(addresses, clients);
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
 
-        try(BufferedReader br = new BufferedReader(new FileReader("skips.txt"))) {
-            String line = br.readLine();
+        loadDefaultDictionary();
+    }
 
-            while (line != null) {
-                skips.add(line);
-                line = br.readLine();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+    private static InetSocketTransportAddress toTransportAddress(String address) throws Exception {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            return new InetSocketTransportAddress(InetAddress.getByName(address), 9300);
+        }
+        return new InetSocketTransportAddress(InetAddress.getByName(address.substring(0, colon)),
+                Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    private void loadDefaultDictionary() {
+        // Ĭϴʵ䣬index/typeЧԤĴʵʱֱӳ
+        if (new File("dictionary.dict").isFile()) {
+            dictionaries.registerCompiled(null, null, "dictionary.dict");
+        } else {
+            dictionaries.register(null, null, "synonyms.txt", "skips.txt");
         }
+    }
+
+    /**
+     * Ϊĳindex/typeôʵ䣬Ĭϴʵ
+     * @param index indexnullʾindex
+     * @param type typenullʾindextype
+     * @param synonymsFile ͬļÿΪ"ֶ ͬ ͬ..."
+     * @param skipsFile شֶļÿһֶ
+     */
+    public void registerDictionary(String index, String type, String synonymsFile, String skipsFile) {
+        dictionaries.register(index, type, synonymsFile, skipsFile);
+    }
+
+    /**
+     * Ϊĳindex/typeԤĴʵ䣬Ĭϴʵ
+     * ʵļڴӳ䷽ʽ򿪣ռöѣʱ
+     * @param index indexnullʾindex
+     * @param type typenullʾindextype
+     * @param compiledFile MappedDictionaryĴʵļ
+     */
+    public void registerCompiledDictionary(String index, String type, String compiledFile) {
+        dictionaries.registerCompiled(index, type, compiledFile);
+    }
+
+    /**
+     * ʵȼأʱʵļ޸ĺԶ¼
+     * ʵӲӰ
+     * @param interval 
+     * @param unit ʱ䵥λ
+     */
+    public void startDictionaryReload(long interval, TimeUnit unit) {
+        dictionaries.startAutoReload(interval, unit);
+    }
+
+    /**
+     * ʵļ޸Ĺ¼
+     */
+    public void reloadDictionaries() {
+        dictionaries.reloadIfModified();
+    }
+
+    /**
+     * ĳindex/typeʹõĴʵ
+     * @param index index
+     * @param type type
+     * @return ʵ
+     */
+    public Dictionary getDictionary(String index, String type) {
+        return dictionaries.get(index, type);
+    }
 
-        System.out.println("synonyms: " + synonyms);
-        System.out.println("skips: " + skips);
+    /**
+     * ÷ִͬʴʵеÿͬʷִʣ±дʵͬԶ
+     * ִ֮ʺΪʵͬҲУʵȼʱͬЧ
+     * ʵϴʱregisterLocalAnalyzerע᱾طִ
+     * Ԥʵ䲻ʱִʣMappedDictionaryָͬķִ
+     * @param index ִʹõindex
+     * @param analyzer ִͣķִһ£ik
+     */
+    public void compileSynonyms(String index, String analyzer) {
+        compileSynonyms(index, analyzer, null);
+    }
+
+    /**
+     * ÷ִıʵеÿͬʷִʣҪԤʵͬһ汾ķִʷʽ
+     * 汾һµԤʵܾأMappedDictionary±
+     * @param index ִʹõindex
+     * @param analyzer ִͣķִһ£ik
+     * @param tokenizerVersion ִʷʽİ汾MappedDictionaryʱдİ汾Ƚϣnullʾ
+     */
+    public void compileSynonyms(final String index, final String analyzer, String tokenizerVersion) {
+        dictionaries.setTokenizer(new Function<String, List<String>>() {
+            @Override
+            public List<String> apply(String text) {
+                return analyze(index, analyzer, text);
+            }
+        }, tokenizerVersion);
     }
 
     /**
@@ -117,13 +314,288 @@ public class SmartSearch {
         return client;
     }
 
+    /**
+     * øڵӳټ״̬ڼ
+     * @return ڵ
+     */
+    public List<NodeSelector.Node> getNodes() {
+        return nodes == null ? Collections.<NodeSelector.Node>emptyList() : nodes.nodes();
+    }
+
+
+    /**
+     * ִʽ棬ظ벻Ⱥִ
+     * @param maxSize ໺ִʽ
+     */
+    public void enableAnalyzeCache(long maxSize) {
+        analyzeCache = new AnalyzeCache(maxSize);
+    }
+
+    /**
+     * رշִʽ
+     */
+    public void disableAnalyzeCache() {
+        analyzeCache = null;
+    }
+
+    /**
+     * ÷ִʽ棬ɲ鿴Сδд
+     * @return ִʽ棬δʱnull
+     */
+    public AnalyzeCache getAnalyzeCache() {
+        return analyzeCache;
+    }
+
+    /**
+     * ע᱾طִ֮÷ִJVMڷִʣʡȥһ
+     * ִ뼯Ⱥִͬһ£IKorg.wltea.analyzer.lucene.IKAnalyzer
+     * @param analyzer ִͣik
+     * @param luceneAnalyzer Lucenḛִ߳ȫ
+     */
+    public void registerLocalAnalyzer(String analyzer, Analyzer luceneAnalyzer) {
+        localAnalyzers.put(analyzer, luceneAnalyzer);
+    }
+
+    /**
+     * ȡطִ֮÷ִȺִ
+     * @param analyzer ִ
+     */
+    public void removeLocalAnalyzer(String analyzer) {
+        localAnalyzers.remove(analyzer);
+    }
+
+    /**
+     * ʴ棬bulkLoadдͬһindex/typeʱӦʧЧ
+     * @param ttl Чʱ
+     * @param unit ʱ䵥λ
+     * @param maxBytes ռڴĹޣλֽ
+     */
+    public void enableResultCache(long ttl, TimeUnit unit, long maxBytes) {
+        resultCache = new ResultCache(ttl, unit, maxBytes);
+    }
+
+    /**
+     * رʴ
+     */
+    public void disableResultCache() {
+        resultCache = null;
+    }
+
+    /**
+     * ʴ棬ɲ鿴ʡ̭
+     * @return 棬δʱnull
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * ʴǰвĿֶ
+     * һûĳֶʱںĽвңֶζҵֹͣ
+     * @param k ҵĽ1ʾֻҵһ
+     */
+    public void setQATopK(int k) {
+        setQATopK(k, null);
+    }
+
+    /**
+     * ʴǰвĿֶΣexecutorвв
+     * @param k ҵĽ1ʾֻҵһ
+     * @param executor вҵ̳߳أnullʾβңҪִʴ̳߳ͬ
+     */
+    public void setQATopK(int k, Executor executor) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1: " + k);
+        qaTopKExecutor = executor;
+        int old = qaTopK;
+        qaTopK = k;
+        // ҵĽͬʱش֮ͬǰĽʧЧ
+        if (old != k) invalidateResultCache(null, null);
+    }
+
+    /**
+     * ʴǷʹֶ
+     * ԵһֻһΣʺֶζࡢǶĵ
+     * @param enabled Ƿ
+     */
+    public void setQAFieldIndex(boolean enabled) {
+        qaFieldIndex = enabled;
+    }
+
+    /**
+     * ĬϵĲѯʽδָѯʽʹø÷ʽ
+     * ѯʽıк֮ͬǰĽʧЧ
+     * @param mode ѯʽ
+     */
+    public void setQueryMode(QueryMode mode) {
+        QueryMode old = queryMode;
+        queryMode = mode;
+        if (old != mode) invalidateResultCache(null, null);
+    }
+
+    /**
+     * ѯ棬ͬķִʲ¹лѯ
+     * @param maxSize ໺ٸѯ
+     */
+    public void enableQueryCache(long maxSize) {
+        queryCache = new QueryCache(maxSize);
+    }
+
+    /**
+     * رղѯ
+     */
+    public void disableQueryCache() {
+        queryCache = null;
+    }
+
+    /**
+     * òѯ棬ɲ鿴
+     * @return ѯ棬δʱnull
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * ʴǷ_source
+     * ֻȡطִʼͬʶӦֶκ͵ֶָε_sourceSearchResult.jsongetJson()ʱȾ
+     * ĵϴʱɴٴ䡢лڴ
+     * @param enabled Ƿ
+     */
+    public void setSourceFiltering(boolean enabled) {
+        sourceFiltering = enabled;
+    }
+
+    /**
+     * ǷϲͬĲʴ
+     * (index, type, , ҳ, explain, fields)ͬĲִֻһΣߵȴ
+     * ȵͻʱԼȺֻһ󣬲֮ͬ以Ӱ
+     * @param enabled Ƿ
+     */
+    public void setSingleFlight(boolean enabled) {
+        searchFlights = enabled ? new SingleFlight<List<Object>, SearchResult>() : null;
+    }
+
+    /**
+     * ִʲüʴڷִ֮֮ǰȥ򽵵ĵķִ
+     * ȻСġǡȷִʼĵüshardĹʴʹȫִ
+     * ĵƵں̨ʱȡ³ֵķִڻȡ֮ǰü
+     * @param maxRatio ĵƵռĵıֵʱü
+     * @param mode ȥǽȨ
+     * @param weight ȨʱȨ
+     * ÿindex/type໺100000ִʵĵƵʣЧ1Сʱ
+     * @param interval ȡĵƵʵļ
+     * @param unit ʱ䵥λ
+     */
+    public void enableKeywordPruning(double maxRatio, KeywordPruner.Mode mode, float weight,
+                                     long interval, TimeUnit unit) {
+        enableKeywordPruning(maxRatio, mode, weight, 100000, 1, TimeUnit.HOURS, interval, unit);
+    }
+
+    /**
+     * ִʲüĵƵʻĴСЧ
+     * ѻ֮ǰĲüõȫʧЧ
+     * @param maxRatio ĵƵռĵıֵʱü
+     * @param mode ȥǽȨ
+     * @param weight ȨʱȨ
+     * @param maxTerms ÿindex/type໺ٸִʵĵƵ
+     * @param ttl ĵƵʵЧڣں»ȡ
+     * @param ttlUnit Чڵʱ䵥λ
+     * @param interval ȡĵƵʵļ
+     * @param unit ʱ䵥λ
+     */
+    public void enableKeywordPruning(double maxRatio, KeywordPruner.Mode mode, float weight, long maxTerms,
+                                     long ttl, TimeUnit ttlUnit, long interval, TimeUnit unit) {
+        KeywordPruner pruner = new KeywordPruner(client, maxRatio, mode, weight, maxTerms, ttl, ttlUnit);
+        pruner.startRefresh(interval, unit);
+        KeywordPruner old = keywordPruner;
+        keywordPruner = pruner;
+        if (old != null) old.stopRefresh();
+        invalidateResultCache(null, null);
+    }
+
+    /**
+     * رշִʲüѻĲüȫʧЧ
+     */
+    public void disableKeywordPruning() {
+        KeywordPruner old = keywordPruner;
+        keywordPruner = null;
+        if (old != null) {
+            old.stopRefresh();
+            invalidateResultCache(null, null);
+        }
+    }
+
+    /**
+     * ÷ִʲüɲ鿴ĵƵ
+     * @return ִʲüδʱnull
+     */
+    public KeywordPruner getKeywordPruner() {
+        return keywordPruner;
+    }
+
+    /**
+     * һķִʲüгÿִʵĵƵʡ
+     * @param index index
+     * @param type type
+     * @param text 
+     * @return üδʱnull
+     */
+    public KeywordPruner.Reduction explainPruning(String index, String type, String text) {
+        KeywordPruner pruner = keywordPruner;
+        return pruner == null ? null : pruner.reduce(index, type, analyze(index, "ik", text));
+    }
+
+    /**
+     * ʴͳƣ׶ӳټСսش
+     * @param reset Ƿãú´ֻͳƴ˺
+     * @return ͳƿ
+     */
+    public SearchStats getSearchStats(boolean reset) {
+        return reset ? metrics.snapshotAndReset() : metrics.snapshot();
+    }
+
+    /**
+     * ͳƵĶʱÿintervalͨlog4jһθͳ
+     * @param interval 
+     * @param unit ʱ䵥λ
+     */
+    public void startMetricsLogging(long interval, TimeUnit unit) {
+        metrics.startLogging(interval, unit);
+    }
+
+    /**
+     * ֹͣͳƵĶʱ
+     */
+    public void stopMetricsLogging() {
+        metrics.stopLogging();
+    }
+
+    /**
+     * ʴ̵ĸٲϢͨlog4jcom.ydy.api.es.trace첽
+     * ִʡͬʡĿֶμҵĻش
+     * @param rate 01֮䣬0ʾر
+     */
+    public void setTraceSampleRate(double rate) {
+        tracer.setSampleRate(rate);
+    }
 
     /**
      * رElasticSearch
      */
     public void close() {
+        dictionaries.stopAutoReload();
+        metrics.stopLogging();
+        disableKeywordPruning();
+        for (LocalSuggester suggester : localSuggesters.values()) {
+            suggester.stopRefresh();
+        }
         if (client == null) return;
         client.close();
+        if (nodes != null) {
+            for (NodeSelector.Node node : nodes.nodes()) {
+                if (node.getClient() != client) node.getClient().close();
+            }
+        }
     }
 
     /**
@@ -139,121 +611,1150 @@ public class SmartSearch {
         // ElasticSearchԴAPIʵ
         public SearchResponse response;
 
-        // ȫĽJSONʽ
+        // ȫĽJSONʽȾʱΪnullʹgetJson()ȡ
         public String json;
 
+        // Ⱦʱ¼ȾʱΪnull
+        final SearchMetrics metrics;
+
         public SearchResult(List<String> highlights, Map<String, Object> answers, SearchResponse response, String json) {
+            this(highlights, answers, response, json, null);
+        }
+
+        SearchResult(List<String> highlights, Map<String, Object> answers, SearchResponse response, String json,
+                     SearchMetrics metrics) {
             this.highlights = highlights;
             this.answers = answers;
             this.response = response;
             this.json = json;
+            this.metrics = metrics;
+        }
+
+        /**
+         * JSONʽĽһεʱȾ
+         * @return JSONʽĽ޽ʱΪnull
+         */
+        public String getJson() {
+            String s = json;
+            if (s == null && response != null) {
+                long start = System.nanoTime();
+                s = response.toString();
+                if (metrics != null) metrics.record(SearchMetrics.Stage.RENDER, start);
+                json = s;
+            }
+            return s;
         }
     }
 
     /**
-     * ȫֶʴAPI
-     * @param index index
-     * @param type type
-     * @param text 
-     * @param size ҳһҳٸ
-     * @param from ҳڼҳ
-     * @param explain Ƿ񷵻Ľͣ
-     * @return 
+     * еһ
      */
-    public SearchResult searchAllWithQA(String index, String type, String text, int size, int from, boolean explain) {
-        // ʹIKAnalyzerִ
-        List<String> keywords = analyze(index, "ik", text);
+    public static class BatchQuery {
+        // index
+        public final String index;
 
-        // ȫ
-        SearchResponse res = searchAll(index, type, keywords, size, from, explain);
+        // type
+        public final String type;
 
-        // ʴ
-        Map<String, Object> qa = getQA(index, type, res, keywords);
+        // 
+        public final String text;
 
-        return new SearchResult(keywords, qa, res, res.toString());
+        public BatchQuery(String index, String type, String text) {
+            this.index = index;
+            this.type = type;
+            this.text = text;
+        }
     }
 
     /**
-     * ʹ÷ִִ
-     * @param index index
-     * @param analyzer ִ
-     * @param text ִ
-     * @return ִʽ
+     * һĽɹʱresultΪnullʧʱfailureΪnull
      */
-    public List<String> analyze(String index, String analyzer, String text) {
-        List<String> res = new ArrayList<>();
-        if (text == null || text.length() == 0 || analyzer == null ||
-                analyzer.length() == 0) {
-            return res;
+    public static class BatchResult {
+        // 
+        public final SearchResult result;
+
+        // ʧԭ
+        public final Throwable failure;
+
+        public BatchResult(SearchResult result, Throwable failure) {
+            this.result = result;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * һĿ
+     */
+    public static class Target {
+        // index
+        public final String index;
+
+        // type
+        public final String type;
+
+        public Target(String index, String type) {
+            this.index = index;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Target)) return false;
+            Target target = (Target) o;
+            return index.equals(target.index) && type.equals(target.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * index.hashCode() + type.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return index + "/" + type;
+        }
+    }
+
+    /**
+     * Ľ
+     */
+    public static class FederatedResult {
+        // ϲʴresponseеĽһķ
+        public final SearchResult result;
+
+        // ɹصĿ
+        public final List<Target> succeeded;
+
+        // ʧܻʱĿ꼰ԭ򣬳ʱΪTimeoutException
+        public final Map<Target, Throwable> failures;
+
+        public FederatedResult(SearchResult result, List<Target> succeeded, Map<Target, Throwable> failures) {
+            this.result = result;
+            this.succeeded = succeeded;
+            this.failures = failures;
+        }
+
+        /**
+         * @return ǷĿʧܻʱֻĿ
+         */
+        public boolean isPartial() {
+            return !failures.isEmpty();
+        }
+    }
+
+    /**
+     * һĿķִʼ
+     */
+    private static final class TargetResponse {
+        final List<String> keywords;
+        final SearchResponse response;
+
+        TargetResponse(List<String> keywords, SearchResponse response) {
+            this.keywords = keywords;
+            this.response = response;
         }
+    }
+
+    /**
+     * ĳʱʱһʹʱ
+     */
+    private static final class TimeoutTimer {
+        static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "smartsearch-timeout");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        static {
+            // ʱɵĿȡʱƳ
+            INSTANCE.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**
+     * ʴһشԴ
+     */
+    public static class Answer {
+        // شֶΣֶǶ
+        public final Object value;
+
+        // ԴĴ
+        public final float score;
+
+        // Դid
+        public final String id;
+
+        // Դڽеλã0ʼ
+        public final int rank;
+
+        public Answer(Object value, float score, String id, int rank) {
+            this.value = value;
+            this.score = score;
+            this.id = id;
+            this.rank = rank;
+        }
+
+        @Override
+        public String toString() {
+            return value + " (id=" + id + ", score=" + score + ", rank=" + rank + ")";
+        }
+    }
+
+    /**
+     * Ĳѯʽ
+     */
+    public enum QueryMode {
+        // ÿִʶֶκtagֶθһmatch_phrase2NshouldӾ
+        PHRASE_CLAUSES,
+
+        // ÿִһphrase͵multi_matchͬʱֶβtagȨ
+        // tie_breakerΪ1Ϊֶ֮ͣPHRASE_CLAUSES൱Ӿ
+        MULTI_MATCH
+    }
+
+    /**
+     * ȫֶʴAPI
+     * @param index index
+     * @param type type
+     * @param text 
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param explain Ƿ񷵻Ľͣ
+     * @return 
+     */
+    public SearchResult searchAllWithQA(String index, String type, String text, int size, int from, boolean explain) {
+        return searchAllWithQA(index, type, text, size, from, explain, null);
+    }
+
+    /**
+     * ȫֶʴAPI
+     * setSourceFilteringʱ_sourceֻʴĿֶκfields
+     * @param index index
+     * @param type type
+     * @param text 
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param explain Ƿ񷵻Ľͣ
+     * @param fields ߻Ҫ_sourceֶΣ֧ͨnullʾҪ
+     * @return 
+     */
+    public SearchResult searchAllWithQA(final String index, final String type, final String text, final int size,
+                                        final int from, final boolean explain, final List<String> fields) {
+        SingleFlight<List<Object>, SearchResult> flights = searchFlights;
+        if (flights == null) {
+            return doSearchAllWithQA(index, type, text, size, from, explain, fields);
+        }
+
+        // һԼִ߳УߵȴĽ
+        CompletableFuture<SearchResult> future = flights.execute(
+                flightKey(index, type, text, size, from, explain, fields), () -> {
+                    try {
+                        return CompletableFuture.completedFuture(
+                                doSearchAllWithQA(index, type, text, size, from, explain, fields));
+                    } catch (RuntimeException e) {
+                        CompletableFuture<SearchResult> failed = new CompletableFuture<>();
+                        failed.completeExceptionally(e);
+                        return failed;
+                    }
+                });
+        try {
+            return copy(future.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private SearchResult doSearchAllWithQA(String index, String type, String text, int size, int from,
+                                           boolean explain, List<String> fields) {
+        long start = System.nanoTime();
+        metrics.query();
+
+        // ʹIKAnalyzerִ
+        List<String> keywords = analyze(index, "ik", text);
+
+        boolean filtering = sourceFiltering;
+        // ָ˶ֶεĽù
+        ResultCache cache = fields == null || fields.isEmpty() ? resultCache : null;
+        if (cache != null) {
+            SearchResult cached = cache.get(index, type, keywords, size, from, explain, filtering);
+            if (cached != null) {
+                metrics.cacheHit();
+                metrics.record(SearchMetrics.Stage.TOTAL, start);
+                return cached;
+            }
+        }
+
+        long generation = cache != null ? cache.generation(index, type) : 0;
+
+        // ĵƵʲüִʺȫʴʹȫִ
+        KeywordPruner.Reduction reduction = reduce(index, type, keywords);
+        SearchRequestBuilder builder = prepareSearch(index, type, "_all", null, reduction.keywords, size, from,
+                null, null, null, explain, queryMode,
+                filtering ? sourceIncludes(index, type, keywords, fields) : null, reduction.boosts);
+        SearchResponse res = builder == null ? null : execute(builder);
+        if (isEmpty(res)) metrics.emptyResult();
+
+        // ʴ
+        Map<String, Object> qa = getQA(index, type, res, keywords);
+
+        SearchResult result = new SearchResult(keywords, qa, res, filtering ? null : render(res), metrics);
+        if (cache != null) {
+            cache.put(index, type, keywords, size, from, explain, filtering, generation, result);
+        }
+        metrics.record(SearchMetrics.Stage.TOTAL, start);
+        return result;
+    }
+
+    /**
+     * ȫֶʴAPI첽汾
+     * ִʡͨActionListenerص̲߳
+     * ʴForkJoinPool.commonPool()ִ
+     * @param index index
+     * @param type type
+     * @param text 
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param explain Ƿ񷵻Ľͣ
+     * @return Future
+     */
+    public CompletableFuture<SearchResult> searchAllWithQAAsync(String index, String type, String text,
+                                                                int size, int from, boolean explain) {
+        return searchAllWithQAAsync(index, type, text, size, from, explain, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * ȫֶʴAPI첽汾
+     * ElasticSearchĻص߳ϣʴDFSŵexecutorִ
+     * @param index index
+     * @param type type
+     * @param text 
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param explain Ƿ񷵻Ľͣ
+     * @param executor ִʴ̳߳
+     * @return Future
+     */
+    public CompletableFuture<SearchResult> searchAllWithQAAsync(final String index, final String type, String text,
+                                                                final int size, final int from, final boolean explain,
+                                                                final Executor executor) {
+        return searchAllWithQAAsync(index, type, text, size, from, explain, null, executor);
+    }
+
+    /**
+     * ȫֶʴAPI첽汾
+     * setSourceFilteringʱ_sourceֻʴĿֶκfields
+     * @param index index
+     * @param type type
+     * @param text 
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param explain Ƿ񷵻Ľͣ
+     * @param fields ߻Ҫ_sourceֶΣ֧ͨnullʾҪ
+     * @param executor ִʴ̳߳
+     * @return Future
+     */
+    public CompletableFuture<SearchResult> searchAllWithQAAsync(final String index, final String type,
+                                                                final String text, final int size, final int from,
+                                                                final boolean explain, final List<String> fields,
+                                                                final Executor executor) {
+        SingleFlight<List<Object>, SearchResult> flights = searchFlights;
+        if (flights == null) {
+            return doSearchAllWithQAAsync(index, type, text, size, from, explain, fields, executor);
+        }
+        // ϲĵ߹һߵexecutor
+        return flights.execute(flightKey(index, type, text, size, from, explain, fields),
+                () -> doSearchAllWithQAAsync(index, type, text, size, from, explain, fields, executor))
+                .thenApply(result -> copy(result));
+    }
+
+    private CompletableFuture<SearchResult> doSearchAllWithQAAsync(final String index, final String type,
+                                                                   String text, final int size, final int from,
+                                                                   final boolean explain, final List<String> fields,
+                                                                   final Executor executor) {
+        final long start = System.nanoTime();
+        metrics.query();
+        final boolean filtering = sourceFiltering;
+        // ָ˶ֶεĽù
+        final ResultCache cache = fields == null || fields.isEmpty() ? resultCache : null;
+        // ʹIKAnalyzerִ
+        return analyzeAsync(index, "ik", text).thenCompose(keywords -> {
+            if (cache != null) {
+                SearchResult cached = cache.get(index, type, keywords, size, from, explain, filtering);
+                if (cached != null) {
+                    metrics.cacheHit();
+                    metrics.record(SearchMetrics.Stage.TOTAL, start);
+                    return CompletableFuture.completedFuture(cached);
+                }
+            }
+            final long generation = cache != null ? cache.generation(index, type) : 0;
+            // ĵƵʲüִʺȫʴʹȫִ
+            KeywordPruner.Reduction reduction = reduce(index, type, keywords);
+            String[] includes = filtering ? sourceIncludes(index, type, keywords, fields) : null;
+            return searchAsync(index, type, "_all", null, reduction.keywords, size, from, null, null, null, explain,
+                    queryMode, includes, reduction.boosts).thenApplyAsync(res -> {
+                if (isEmpty(res)) metrics.emptyResult();
+                if (res == null) {
+                    metrics.record(SearchMetrics.Stage.TOTAL, start);
+                    return new SearchResult(keywords, new HashMap<String, Object>(), null, null);
+                }
+                // ʴ
+                Map<String, Object> qa = getQA(index, type, res, keywords);
+                SearchResult result = new SearchResult(keywords, qa, res, filtering ? null : render(res), metrics);
+                if (cache != null) {
+                    cache.put(index, type, keywords, size, from, explain, filtering, generation, result);
+                }
+                metrics.record(SearchMetrics.Stage.TOTAL, start);
+                return result;
+            }, executor);
+        });
+    }
+
+    /**
+     * ȫֶʴAPI
+     * ͬʱִʣȫϲΪһMultiSearchʴִ
+     * ˳һ£ʧܲӰ
+     * @param queries б
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param explain Ƿ񷵻Ľͣ
+     * @return ˳һµĽб
+     */
+    public List<BatchResult> searchAllWithQABatch(final List<BatchQuery> queries, final int size, final int from,
+                                                  final boolean explain) {
+        long start = System.nanoTime();
+        final int n = queries.size();
+        final BatchResult[] results = new BatchResult[n];
+        final boolean filtering = sourceFiltering;
+        final ResultCache cache = resultCache;
+
+        // ͬʱзִ
+        List<CompletableFuture<List<String>>> analyzing = new ArrayList<>(n);
+        for (BatchQuery query : queries) {
+            metrics.query();
+            analyzing.add(analyzeAsync(query.index, "ik", query.text));
+        }
+
+        final List<List<String>> keywordsList = new ArrayList<>(n);
+        // 뷢ǰĻ
+        final long[] generations = new long[n];
+        MultiSearchRequestBuilder multiSearch = client.prepareMultiSearch();
+        // MultiSearchеiӦ±
+        final List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            BatchQuery query = queries.get(i);
+            List<String> keywords;
+            try {
+                keywords = analyzing.get(i).join();
+            } catch (CompletionException e) {
+                results[i] = new BatchResult(null, e.getCause());
+                keywordsList.add(null);
+                continue;
+            }
+            keywordsList.add(keywords);
+
+            if (cache != null) {
+                generations[i] = cache.generation(query.index, query.type);
+                SearchResult cached = cache.get(query.index, query.type, keywords, size, from, explain, filtering);
+                if (cached != null) {
+                    metrics.cacheHit();
+                    results[i] = new BatchResult(cached, null);
+                    continue;
+                }
+            }
+
+            SearchRequestBuilder builder;
+            try {
+                KeywordPruner.Reduction reduction = reduce(query.index, query.type, keywords);
+                builder = prepareSearch(query.index, query.type, "_all", null, reduction.keywords, size, from,
+                        null, null, null, explain, queryMode,
+                        filtering ? sourceIncludes(query.index, query.type, keywords, null) : null, reduction.boosts);
+            } catch (Exception e) {
+                // ʧܲӰ
+                results[i] = new BatchResult(null, e);
+                continue;
+            }
+            if (builder == null) {
+                results[i] = new BatchResult(new SearchResult(keywords, new HashMap<String, Object>(), null, null),
+                        null);
+                continue;
+            }
+            multiSearch.add(builder);
+            positions.add(i);
+        }
+
+        if (!positions.isEmpty()) {
+            final MultiSearchResponse.Item[] items;
+            try {
+                PlainActionFuture<MultiSearchResponse> future = PlainActionFuture.newFuture();
+                final MultiSearchRequest request = multiSearch.request();
+                nodes.execute((nodeClient, listener) -> nodeClient.multiSearch(request, listener),
+                        metrics.time(SearchMetrics.Stage.SEARCH, positions.size(), future));
+                items = future.actionGet().getResponses();
+            } catch (Exception e) {
+                for (int i : positions) {
+                    results[i] = new BatchResult(null, e);
+                }
+                metrics.record(SearchMetrics.Stage.TOTAL, start, n);
+                return Arrays.asList(results);
+            }
+
+            // ʴִ
+            IntStream.range(0, items.length).parallel().forEach(j -> {
+                int i = positions.get(j);
+                BatchQuery query = queries.get(i);
+                MultiSearchResponse.Item item = items[j];
+                if (item.isFailure()) {
+                    results[i] = new BatchResult(null, item.getFailure());
+                    return;
+                }
+                try {
+                    SearchResponse res = item.getResponse();
+                    List<String> keywords = keywordsList.get(i);
+                    if (isEmpty(res)) metrics.emptyResult();
+                    Map<String, Object> qa = getQA(query.index, query.type, res, keywords);
+                    SearchResult result = new SearchResult(keywords, qa, res, filtering ? null : render(res), metrics);
+                    if (cache != null) {
+                        cache.put(query.index, query.type, keywords, size, from, explain, filtering,
+                                generations[i], result);
+                    }
+                    results[i] = new BatchResult(result, null);
+                } catch (Exception e) {
+                    results[i] = new BatchResult(null, e);
+                }
+            });
+        }
+
+        // Ľһ𷵻أÿܺʱĺʱ
+        metrics.record(SearchMetrics.Stage.TOTAL, start, n);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * ʴAPI
+     * ͬʱ(index, type)ĿĽԵ߷ֹһϲٶԺϲһʴ
+     * ӳȡδʱĿ꣬ǸĿ֮
+     * @param targets Ŀ
+     * @param text 
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param explain Ƿ񷵻Ľͣ
+     * @param timeout ÿĿĳʱʱ
+     * @param unit ʱ䵥λ
+     * @param allowPartial ĿʧܻʱʱǷ񷵻ĿĽfalseʱһĿʧʧ
+     * @return 
+     */
+    public FederatedResult searchFederatedWithQA(List<Target> targets, String text, int size, int from,
+                                                 boolean explain, long timeout, TimeUnit unit, boolean allowPartial) {
+        try {
+            return searchFederatedWithQAAsync(targets, text, size, from, explain, timeout, unit, allowPartial,
+                    ForkJoinPool.commonPool()).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * ʴAPI첽汾
+     * ÿindexִֻһΣĿͬʱʱĿ겻ٵȴ
+     * ElasticSearchʱΪʱ80%Ⱥڿͻ˳ʱǰеĲֽ
+     * ʴʹñҳһĿĴʵ
+     * @param targets Ŀ
+     * @param text 
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param explain Ƿ񷵻Ľͣ
+     * @param timeout ÿĿĳʱʱ
+     * @param unit ʱ䵥λ
+     * @param allowPartial ĿʧܻʱʱǷ񷵻ĿĽfalseʱһĿʧʧ
+     * @param executor ϲִʴ̳߳
+     * @return FutureȫĿʧʱԵһʧܽ
+     */
+    public CompletableFuture<FederatedResult> searchFederatedWithQAAsync(final List<Target> targets, String text,
+                                                                         final int size, final int from,
+                                                                         boolean explain, long timeout,
+                                                                         TimeUnit unit, final boolean allowPartial,
+                                                                         Executor executor) {
+        final long start = System.nanoTime();
+        metrics.query();
+        final boolean filtering = sourceFiltering;
+        final long timeoutNanos = unit.toNanos(timeout);
+        final int n = targets.size();
+        final CompletableFuture<FederatedResult> result = new CompletableFuture<>();
+
+        // ͬһindexĿ깲һηִ
+        Map<String, CompletableFuture<List<String>>> analyzing = new HashMap<>();
+        for (Target target : targets) {
+            if (!analyzing.containsKey(target.index)) {
+                analyzing.put(target.index, analyzeAsync(target.index, "ik", text));
+            }
+        }
+
+        // ÿĿȡǰfrom+sizeϲٷҳ
+        final TargetResponse[] responses = new TargetResponse[n];
+        final Throwable[] errors = new Throwable[n];
+        CompletableFuture<?>[] done = new CompletableFuture<?>[n];
+        for (int i = 0; i < n; i++) {
+            final int position = i;
+            Target target = targets.get(i);
+            done[i] = withTimeout(searchTarget(target, analyzing.get(target.index), from + size, explain, filtering,
+                    timeoutNanos), timeoutNanos, target).handle((response, throwable) -> {
+                if (throwable != null) {
+                    errors[position] = throwable instanceof CompletionException && throwable.getCause() != null ?
+                            throwable.getCause() : throwable;
+                    if (!allowPartial) result.completeExceptionally(errors[position]);
+                } else {
+                    responses[position] = response;
+                }
+                return null;
+            });
+        }
+
+        CompletableFuture.allOf(done).thenRunAsync(() -> {
+            if (result.isDone()) return;
+            try {
+                merge(targets, responses, errors, size, from, filtering, start, result);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, executor);
+        return result;
+    }
+
+    /**
+     * һĿüִʲ
+     */
+    private CompletableFuture<TargetResponse> searchTarget(final Target target,
+                                                           CompletableFuture<List<String>> analyzing,
+                                                           final int size, final boolean explain,
+                                                           final boolean filtering, final long timeoutNanos) {
+        return analyzing.thenCompose(keywords -> {
+            final CompletableFuture<TargetResponse> future = new CompletableFuture<>();
+            KeywordPruner.Reduction reduction = reduce(target.index, target.type, keywords);
+            SearchRequestBuilder builder = prepareSearch(target.index, target.type, "_all", null, reduction.keywords,
+                    size, 0, null, null, null, explain, queryMode,
+                    filtering ? sourceIncludes(target.index, target.type, keywords, null) : null, reduction.boosts);
+            if (builder == null) {
+                future.complete(new TargetResponse(keywords, null));
+                return future;
+            }
+            // ȺڳʱǰֹͣռظshardеĽصʱ䣬ͻ˵ĳʱ
+            builder.setTimeout(TimeValue.timeValueNanos(timeoutNanos * 4 / 5));
+            execute(builder, new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse searchResponse) {
+                    future.complete(new TargetResponse(keywords, searchResponse));
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    future.completeExceptionally(throwable);
+                }
+            });
+            return future;
+        });
+    }
+
+    /**
+     * ڳʱʱδʱTimeoutExceptionȡԭ
+     */
+    private static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeoutNanos,
+                                                        final Target target) {
+        final CompletableFuture<T> timed = new CompletableFuture<>();
+        final ScheduledFuture<?> timer = TimeoutTimer.INSTANCE.schedule(() -> {
+            timed.completeExceptionally(new TimeoutException(target + " timed out"));
+        }, timeoutNanos, TimeUnit.NANOSECONDS);
+        future.whenComplete((value, throwable) -> {
+            timer.cancel(false);
+            if (throwable != null) {
+                timed.completeExceptionally(throwable);
+            } else {
+                timed.complete(value);
+            }
+        });
+        return timed;
+    }
+
+    /**
+     * һķϲĿĽҳԺϲʴ
+     * ĿķԸĿ߷֣ͬʱĿ˳
+     */
+    private void merge(List<Target> targets, TargetResponse[] responses, Throwable[] errors, int size, int from,
+                       boolean filtering, long start, CompletableFuture<FederatedResult> result) {
+        List<Target> succeeded = new ArrayList<>();
+        Map<Target, Throwable> failures = new LinkedHashMap<>();
+        List<InternalSearchHit> hits = new ArrayList<>();
+        List<Float> scores = new ArrayList<>();
+        // ÿĿ±
+        List<Integer> owners = new ArrayList<>();
+        List<ShardSearchFailure> shardFailures = new ArrayList<>();
+        long totalHits = 0;
+        int totalShards = 0, successfulShards = 0;
+        boolean timedOut = false;
+        List<String> keywords = null;
+
+        for (int i = 0; i < targets.size(); i++) {
+            Target target = targets.get(i);
+            if (errors[i] != null) {
+                failures.put(target, errors[i]);
+                continue;
+            }
+            succeeded.add(target);
+            if (keywords == null) keywords = responses[i].keywords;
+            SearchResponse res = responses[i].response;
+            if (res == null) continue;
+
+            totalHits += res.getHits().getTotalHits();
+            totalShards += res.getTotalShards();
+            successfulShards += res.getSuccessfulShards();
+            timedOut |= res.isTimedOut();
+            shardFailures.addAll(Arrays.asList(res.getShardFailures()));
+            float maxScore = res.getHits().getMaxScore();
+            for (SearchHit hit : res.getHits().getHits()) {
+                hits.add((InternalSearchHit) hit);
+                scores.add(maxScore > 0 ? hit.getScore() / maxScore : 0f);
+                owners.add(i);
+            }
+        }
+
+        if (succeeded.isEmpty() && !failures.isEmpty()) {
+            result.completeExceptionally(failures.values().iterator().next());
+            return;
+        }
+
+        // ȶ򣬷ͬʱĿ˳Ŀڵ˳
+        Integer[] order = new Integer[hits.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Float.compare(scores.get(b), scores.get(a)));
+
+        int end = Math.min(order.length, from + size);
+        InternalSearchHit[] page = new InternalSearchHit[Math.max(0, end - from)];
+        for (int i = from; i < end; i++) {
+            InternalSearchHit hit = hits.get(order[i]);
+            hit.score(scores.get(order[i]));
+            page[i - from] = hit;
+        }
+
+        SearchResponse merged = null;
+        Target top = succeeded.isEmpty() ? null : succeeded.get(0);
+        // ʴشǱҳʹñҳһĿĴʵ
+        if (from < order.length) {
+            int owner = owners.get(order[from]);
+            top = targets.get(owner);
+            keywords = responses[owner].keywords;
+        }
+        if (top != null) {
+            InternalSearchHits searchHits = new InternalSearchHits(page, totalHits,
+                    order.length == 0 ? Float.NaN : scores.get(order[0]));
+            merged = new SearchResponse(new InternalSearchResponse(searchHits, null, null, null, timedOut, null),
+                    null, totalShards, successfulShards, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    shardFailures.toArray(new ShardSearchFailure[shardFailures.size()]));
+        }
+        if (isEmpty(merged)) metrics.emptyResult();
+
+        // ʴ
+        Map<String, Object> qa = merged == null ? new HashMap<String, Object>() :
+                getQA(top.index, top.type, merged, keywords);
+        SearchResult searchResult = new SearchResult(keywords == null ? new ArrayList<String>() : keywords, qa,
+                merged, filtering || merged == null ? null : render(merged), metrics);
+        metrics.record(SearchMetrics.Stage.TOTAL, start);
+        result.complete(new FederatedResult(searchResult, succeeded, failures));
+    }
+
+    /**
+     * ʹ÷ִִ
+     * @param index index
+     * @param analyzer ִ
+     * @param text ִ
+     * @return ִʽ
+     */
+    public List<String> analyze(String index, String analyzer, String text) {
+        List<String> res = new ArrayList<>();
+        if (text == null || text.length() == 0 || analyzer == null ||
+                analyzer.length() == 0) {
+            return res;
+        }
+
+        long start = System.nanoTime();
+        AnalyzeCache cache = analyzeCache;
+        if (cache != null) {
+            List<String> cached = cache.get(index, analyzer, text);
+            if (cached != null) {
+                metrics.record(SearchMetrics.Stage.ANALYZE, start);
+                return cached;
+            }
+        }
+
+        Analyzer luceneAnalyzer = localAnalyzers.get(analyzer);
+        if (luceneAnalyzer != null) {
+            res = analyzeLocal(luceneAnalyzer, text);
+        } else {
+            AnalyzeRequest analyzeRequest = new AnalyzeRequest(index).text(text).analyzer(analyzer);
+            PlainActionFuture<AnalyzeResponse> future = PlainActionFuture.newFuture();
+            nodes.execute((nodeClient, l) -> nodeClient.admin().indices().analyze(analyzeRequest, l), future);
+            res = toKeywords(future.actionGet());
+        }
+
+        if (cache != null) {
+            cache.put(index, analyzer, text, res);
+        }
+        metrics.record(SearchMetrics.Stage.ANALYZE, start);
+        return res;
+    }
+
+    /**
+     * ʹ÷ִ첽ִ
+     * @param index index
+     * @param analyzer ִ
+     * @param text ִ
+     * @return ִʽFuture
+     */
+    public CompletableFuture<List<String>> analyzeAsync(final String index, final String analyzer, final String text) {
+        final CompletableFuture<List<String>> future = new CompletableFuture<>();
+        if (text == null || text.length() == 0 || analyzer == null ||
+                analyzer.length() == 0) {
+            future.complete(new ArrayList<String>());
+            return future;
+        }
+
+        long start = System.nanoTime();
+        final AnalyzeCache cache = analyzeCache;
+        if (cache != null) {
+            List<String> cached = cache.get(index, analyzer, text);
+            if (cached != null) {
+                metrics.record(SearchMetrics.Stage.ANALYZE, start);
+                future.complete(cached);
+                return future;
+            }
+        }
+
+        Analyzer luceneAnalyzer = localAnalyzers.get(analyzer);
+        if (luceneAnalyzer != null) {
+            try {
+                List<String> res = analyzeLocal(luceneAnalyzer, text);
+                if (cache != null) {
+                    cache.put(index, analyzer, text, res);
+                }
+                metrics.record(SearchMetrics.Stage.ANALYZE, start);
+                future.complete(res);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        AnalyzeRequest analyzeRequest = new AnalyzeRequest(index).text(text).analyzer(analyzer);
+        ActionListener<AnalyzeResponse> listener = new ActionListener<AnalyzeResponse>() {
+            @Override
+            public void onResponse(AnalyzeResponse analyzeResponse) {
+                List<String> res = toKeywords(analyzeResponse);
+                if (cache != null) {
+                    cache.put(index, analyzer, text, res);
+                }
+                future.complete(res);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        };
+        nodes.execute((nodeClient, l) -> nodeClient.admin().indices().analyze(analyzeRequest, l),
+                metrics.time(SearchMetrics.Stage.ANALYZE, listener));
+        return future;
+    }
+
+    /**
+     * JVMʹLuceneִִ
+     * @param luceneAnalyzer Luceneִ
+     * @param text ִ
+     * @return ִʽ
+     */
+    static List<String> analyzeLocal(Analyzer luceneAnalyzer, String text) {
+        List<String> res = new ArrayList<>();
+        try (TokenStream stream = luceneAnalyzer.tokenStream("", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                res.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return res;
+    }
+
+    /**
+     * ȡִʽеĴ
+     * @param analyzeResponse ִʽ
+     * @return ִʽ
+     */
+    private List<String> toKeywords(AnalyzeResponse analyzeResponse) {
+        List<String> res = new ArrayList<>();
+        for (AnalyzeResponse.AnalyzeToken token : analyzeResponse.getTokens()) {
+            res.add(token.getTerm());
+        }
+        return res;
+    }
+
+    /**
+     * ȫֶ
+     * @param index index
+     * @param type type
+     * @param keywords ķִ
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param explain Ƿ񷵻Ľͣ
+     * @return ʹTF-IDF
+     */
+    public SearchResponse searchAll(String index, String type, List<String> keywords, int size, int from, boolean explain) {
+        // _allһĬɵֶϺֶΣȫֶƥ
+        return search(index, type, "_all", null, keywords, size, from, null, null, null, explain);
+    }
+
+    /**
+     * ȫֶ첽
+     * @param index index
+     * @param type type
+     * @param keywords ķִ
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param explain Ƿ񷵻Ľͣ
+     * @return FutureϷʱΪnull
+     */
+    public CompletableFuture<SearchResponse> searchAllAsync(String index, String type, List<String> keywords,
+                                                            int size, int from, boolean explain) {
+        return searchAsync(index, type, "_all", null, keywords, size, from, null, null, null, explain);
+    }
+
+    /**
+     * ӿ
+     * @param index index
+     * @param type type
+     * @param queryTerm ֶ
+     * @param resultTerm صֶμnullȫ
+     * @param keywords ķִ
+     * @param size ҳһҳٸ
+     * @param from ҳڼҳ
+     * @param sort ǷӰĳֶnullʾ
+     * @param sortOrder , nullʾ
+     * @param highLight ǷĳЩֶԶǩnullʾ
+     * @param explain Ƿ񷵻Ľͣ
+     * @return 
+     */
+    public SearchResponse search(String index, String type, String queryTerm, List<String> resultTerm,
+                                 List<String> keywords, int size, int from, String sort, SortOrder sortOrder,
+                                 List<String> highLight, boolean explain) {
+        return search(index, type, queryTerm, resultTerm, keywords, size, from, sort, sortOrder, highLight,
+                explain, queryMode);
+    }
+
+    /**
+     * ӿڣָѯʽͬsearch
+     * @param mode ѯʽ
+     * @return 
+     */
+    public SearchResponse search(String index, String type, String queryTerm, List<String> resultTerm,
+                                 List<String> keywords, int size, int from, String sort, SortOrder sortOrder,
+                                 List<String> highLight, boolean explain, QueryMode mode) {
+        SearchRequestBuilder builder = prepareSearch(index, type, queryTerm, resultTerm, keywords, size, from,
+                sort, sortOrder, highLight, explain, mode, null, null);
+        if (builder == null) return null;
+
+        SearchResponse res = execute(builder);
+
+        return res;
+    }
+
+    /**
+     * 첽ӿڣͬsearch
+     * @return FutureϷʱΪnull
+     */
+    public CompletableFuture<SearchResponse> searchAsync(String index, String type, String queryTerm,
+                                                         List<String> resultTerm, List<String> keywords,
+                                                         int size, int from, String sort, SortOrder sortOrder,
+                                                         List<String> highLight, boolean explain) {
+        return searchAsync(index, type, queryTerm, resultTerm, keywords, size, from, sort, sortOrder, highLight,
+                explain, queryMode);
+    }
+
+    /**
+     * 첽ӿڣָѯʽͬsearch
+     * @param mode ѯʽ
+     * @return FutureϷʱΪnull
+     */
+    public CompletableFuture<SearchResponse> searchAsync(String index, String type, String queryTerm,
+                                                         List<String> resultTerm, List<String> keywords,
+                                                         int size, int from, String sort, SortOrder sortOrder,
+                                                         List<String> highLight, boolean explain, QueryMode mode) {
+        return searchAsync(index, type, queryTerm, resultTerm, keywords, size, from, sort, sortOrder, highLight,
+                explain, mode, null, null);
+    }
+
+    private CompletableFuture<SearchResponse> searchAsync(String index, String type, String queryTerm,
+                                                          List<String> resultTerm, List<String> keywords,
+                                                          int size, int from, String sort, SortOrder sortOrder,
+                                                          List<String> highLight, boolean explain, QueryMode mode,
+                                                          String[] sourceIncludes, Map<String, Float> boosts) {
+        final CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        SearchRequestBuilder builder = prepareSearch(index, type, queryTerm, resultTerm, keywords, size, from,
+                sort, sortOrder, highLight, explain, mode, sourceIncludes, boosts);
+        if (builder == null) {
+            future.complete(null);
+            return future;
+        }
+
+        execute(builder, new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse searchResponse) {
+                future.complete(searchResponse);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * ȷҳӿڣαҳȫض
+     * ʹfromÿshardҪfrom+sizeСȶУڴ涼
+     * @param index index
+     * @param type type
+     * @param queryTerm ֶ
+     * @param resultTerm صֶμnullȫ
+     * @param keywords ķִ
+     * @param pageSize ÿҳٸ
+     * @param keepAlive ҳ֮scrollıʱ
+     * @return α꣬close()ͷţϷʱnull
+     */
+    public SearchCursor searchCursor(String index, String type, String queryTerm, List<String> resultTerm,
+                                     List<String> keywords, int pageSize, TimeValue keepAlive) {
+        SearchRequestBuilder builder = prepareSearch(index, type, queryTerm, resultTerm, keywords, pageSize, 0,
+                null, null, null, false, queryMode, null, null);
+        if (builder == null) return null;
+
+        return new SearchCursor(client, builder, keepAlive);
+    }
+
+    /**
+     * һȫÿshardһscrollе֤˳
+     * @param index index
+     * @param type type
+     * @param queryTerm ֶ
+     * @param keywords ķִ
+     * @param pageSize ÿshardÿҳٸ
+     * @param parallelism ͬʱscrollshard
+     * @param handler ÿҳĻصͬshardҳᱻ
+     * @return Ľ
+     */
+    public long export(String index, String type, String queryTerm, List<String> keywords, int pageSize,
+                       int parallelism, ParallelScroll.PageHandler handler)
+            throws ExecutionException, InterruptedException {
+        return new ParallelScroll(client, index, type, buildQuery(queryTerm, keywords, queryMode), pageSize,
+                TimeValue.timeValueMinutes(1)).run(parallelism, handler);
+    }
+
+    /**
+     * ѡĽڵִ󲢵ȴ
+     */
+    private SearchResponse execute(SearchRequestBuilder builder) {
+        PlainActionFuture<SearchResponse> future = PlainActionFuture.newFuture();
+        execute(builder, future);
+        return future.actionGet();
+    }
+
+    /**
+     * ѡĽڵ첽ִ󣬼¼ýڵĺʱڵʧʱһڵһ
+     */
+    private void execute(SearchRequestBuilder builder, ActionListener<SearchResponse> listener) {
+        final SearchRequest request = builder.request();
+        nodes.execute((nodeClient, l) -> nodeClient.search(request, l),
+                metrics.time(SearchMetrics.Stage.SEARCH, listener));
+    }
+
+    /**
+     * ϲĵ߹ͬһԷһݿ޸ĵĻش
+     */
+    private static SearchResult copy(SearchResult result) {
+        return new SearchResult(new ArrayList<>(result.highlights), new HashMap<>(result.answers), result.response,
+                result.json, result.metrics);
+    }
+
+    /**
+     * ϲʴkeyӰãøıĵò֮ǰĵúϲ
+     */
+    private List<Object> flightKey(String index, String type, String text, int size, int from, boolean explain,
+                                   List<String> fields) {
+        return Arrays.<Object>asList(index, type, text, size, from, explain, fields, queryMode, sourceFiltering,
+                qaTopK, keywordPruner);
+    }
+
+    /**
+     * ȾΪJSON¼Ⱦʱ
+     */
+    private String render(SearchResponse res) {
+        long start = System.nanoTime();
+        String json = res.toString();
+        metrics.record(SearchMetrics.Stage.RENDER, start);
+        return json;
+    }
 
-        AnalyzeRequest analyzeRequest = new AnalyzeRequest(index).text(text).analyzer(analyzer);
-        List<AnalyzeResponse.AnalyzeToken> tokens = client.admin().indices().analyze(analyzeRequest).actionGet().getTokens();
-        for (AnalyzeResponse.AnalyzeToken token : tokens) {
-            res.add(token.getTerm());
-        }
-        return res;
+    private static boolean isEmpty(SearchResponse res) {
+        return res == null || res.getHits().getTotalHits() == 0;
     }
 
     /**
-     * ȫֶ
-     * @param index index
-     * @param type type
-     * @param keywords ķִ
-     * @param size ҳһҳٸ
-     * @param from ҳڼҳ
-     * @param explain Ƿ񷵻Ľͣ
-     * @return ʹTF-IDF
+     * ĵƵʲüȫֶķִʣδʱԭ
      */
-    public SearchResponse searchAll(String index, String type, List<String> keywords, int size, int from, boolean explain) {
-        // _allһĬɵֶϺֶΣȫֶƥ
-        return search(index, type, "_all", null, keywords, size, from, null, null, null, explain);
+    private KeywordPruner.Reduction reduce(String index, String type, List<String> keywords) {
+        KeywordPruner pruner = keywordPruner;
+        if (pruner == null) return KeywordPruner.Reduction.unchanged(keywords);
+        KeywordPruner.Reduction reduction = pruner.reduce(index, type, keywords);
+        if (reduction.isReduced() && tracer.sample()) tracer.trace("pruned:\n" + reduction);
+        return reduction;
     }
 
     /**
-     * ӿ
-     * @param index index
-     * @param type type
-     * @param queryTerm ֶ
-     * @param resultTerm صֶμnullȫ
-     * @param keywords ķִ
-     * @param size ҳһҳٸ
-     * @param from ҳڼҳ
-     * @param sort ǷӰĳֶnullʾ
-     * @param sortOrder , nullʾ
-     * @param highLight ǷĳЩֶԶǩnullʾ
-     * @param explain Ƿ񷵻Ľͣ
-     * @return 
+     * 󣬲ͬsearch
+     * @param boosts ִʵȨأnullʾΪ1
+     * @return 󣬲Ϸʱnull
      */
-    public SearchResponse search(String index, String type, String queryTerm, List<String> resultTerm,
-                                 List<String> keywords, int size, int from, String sort, SortOrder sortOrder,
-                                 List<String> highLight, boolean explain) {
+    private SearchRequestBuilder prepareSearch(String index, String type, String queryTerm, List<String> resultTerm,
+                                               List<String> keywords, int size, int from, String sort,
+                                               SortOrder sortOrder, List<String> highLight, boolean explain,
+                                               QueryMode mode, String[] sourceIncludes, Map<String, Float> boosts) {
         if (index == null || type == null || queryTerm == null || keywords == null ||
                 index.length() == 0 || type.length() == 0 || queryTerm.length() == 0 ||
                 keywords.size() == 0 || size < 0 || from < 0) {
             return null;
         }
 
-        BoolQueryBuilder boolShould = QueryBuilders.boolQuery();
-
-        for (String keyword : keywords) {
-            boolShould.should(QueryBuilders.matchPhraseQuery(queryTerm, keyword));
-            // TF-IDF⣬ĳֶӴȨֵ
-            // ʹֶƥǰ
-            // ȨֵĬΪ1
-            boolShould.should(QueryBuilders.matchPhraseQuery("tag", keyword).boost(2.0f));
-        }
-
-        BoolQueryBuilder boolMust = QueryBuilders.boolQuery();
-
-        boolMust.must(boolShould);
-
         SearchRequestBuilder builder = client.prepareSearch(index)
                 .setTypes(type)
-                .setQuery(boolMust)
                 .setSize(size)
                 .setFrom(from);
 
+        QueryCache cache = queryCache;
+        if (cache != null) {
+            BytesReference query = cache.get(mode, queryTerm, keywords, boosts);
+            if (query == null) {
+                query = buildQuery(queryTerm, keywords, mode, boosts).buildAsBytes();
+                cache.put(mode, queryTerm, keywords, boosts, query);
+            }
+            builder.setQuery(query);
+        } else {
+            builder.setQuery(buildQuery(queryTerm, keywords, mode, boosts));
+        }
+
         builder.setExplain(explain);
 
         if (highLight != null) {
@@ -272,9 +1773,101 @@ public class SmartSearch {
             builder.addSort(sort, sortOrder);
         }
 
-        SearchResponse res = builder.get();
+        if (sourceIncludes != null) {
+            if (sourceIncludes.length == 0) {
+                builder.setFetchSource(false);
+            } else {
+                builder.setFetchSource(sourceIncludes, null);
+            }
+        }
+
+        return builder;
+    }
 
-        return res;
+    /**
+     * ʴĿֶ_sourceinclude
+     * ĿֶοǶײ㣬ÿֶͬʱд
+     * @param index index
+     * @param type type
+     * @param keywords ķִ
+     * @param fields ߻ҪֶΣΪnull
+     * @return includeбΪձʾȡ_source
+     */
+    private String[] sourceIncludes(String index, String type, List<String> keywords, List<String> fields) {
+        Dictionary dictionary = dictionaries.get(index, type);
+        Set<String> includes = new LinkedHashSet<>();
+        for (String target : getTargetField(dictionary, keywords, false)) {
+            if (dictionary.isSkip(target)) continue;
+            includes.add(target);
+            includes.add("*." + target);
+        }
+        if (fields != null) {
+            includes.addAll(fields);
+        }
+        return includes.toArray(new String[includes.size()]);
+    }
+
+    /**
+     * ѯ
+     * @param queryTerm ֶ
+     * @param keywords ķִ
+     * @param mode ѯʽ
+     * @return ѯ
+     */
+    public QueryBuilder buildQuery(String queryTerm, List<String> keywords, QueryMode mode) {
+        return buildQuery(queryTerm, keywords, mode, null);
+    }
+
+    /**
+     * ѯִַʹָȨ
+     * @param queryTerm ֶ
+     * @param keywords ķִ
+     * @param mode ѯʽ
+     * @param boosts ִʵȨأеķִȨΪ1nullʾΪ1
+     * @return ѯ
+     */
+    public QueryBuilder buildQuery(String queryTerm, List<String> keywords, QueryMode mode,
+                                   Map<String, Float> boosts) {
+        if (mode == QueryMode.MULTI_MATCH) {
+            BoolQueryBuilder boolShould = QueryBuilders.boolQuery();
+
+            for (String keyword : keywords) {
+                MultiMatchQueryBuilder multiMatch = QueryBuilders.multiMatchQuery(keyword)
+                        .field(queryTerm)
+                        .field("tag", 2.0f)
+                        .type(MultiMatchQueryBuilder.Type.PHRASE)
+                        .tieBreaker(1.0f);
+                float boost = boost(boosts, keyword);
+                if (boost != 1.0f) multiMatch.boost(boost);
+                boolShould.should(multiMatch);
+            }
+
+            return boolShould;
+        }
+
+        BoolQueryBuilder boolShould = QueryBuilders.boolQuery();
+
+        for (String keyword : keywords) {
+            float boost = boost(boosts, keyword);
+            MatchQueryBuilder phrase = QueryBuilders.matchPhraseQuery(queryTerm, keyword);
+            if (boost != 1.0f) phrase.boost(boost);
+            boolShould.should(phrase);
+            // TF-IDF⣬ĳֶӴȨֵ
+            // ʹֶƥǰ
+            // ȨֵĬΪ1
+            boolShould.should(QueryBuilders.matchPhraseQuery("tag", keyword).boost(2.0f * boost));
+        }
+
+        BoolQueryBuilder boolMust = QueryBuilders.boolQuery();
+
+        boolMust.must(boolShould);
+
+        return boolMust;
+    }
+
+    private static float boost(Map<String, Float> boosts, String keyword) {
+        Float boost = boosts == null ? null : boosts.get(keyword);
+        return boost == null ? 1.0f : boost;
     }
 
     /**
@@ -286,6 +1879,16 @@ public class SmartSearch {
      * @return һֶεǶףһСΧ
      */
     public Map<String, Object> getQA(String index, String type, SearchResponse res, List<String> keywords) {
+        int k = qaTopK;
+        if (k > 1) {
+            Map<String, Object> result = new HashMap<>();
+            for (Map.Entry<String, Answer> entry : getQA(index, type, res, keywords, k, qaTopKExecutor).entrySet()) {
+                result.put(entry.getKey(), entry.getValue().value);
+            }
+            return result;
+        }
+
+        long start = System.nanoTime();
         Map<String, Object> result = new HashMap<>();
 
         //Set<String> fieldSet = new HashSet<>();
@@ -293,26 +1896,154 @@ public class SmartSearch {
 
         //System.out.println("fieldSet: " + fieldSet);
 
+        // index/typeʹõĴʵ䣬ȼʱ滻ʴڱһ
+        Dictionary dictionary = dictionaries.get(index, type);
+
+        // ʴǷ٣δʱƴκθϢ
+        boolean trace = tracer.sample();
+
         // ԷִʽԶͬ
-        List<String> targetFields = getTargetField(type, keywords);
+        List<String> targetFields = getTargetField(dictionary, keywords, trace);
+
+        if (trace) tracer.trace("targets: " + targetFields);
 
-        System.out.println("targets: " + targetFields);
+        // ֶʱڵһβǰ
+        FieldIndex fieldIndex = null;
 
         for (String s : targetFields) {
             // ԶĳЩʲֶ
-            if (skips.contains(s)) continue;
+            if (dictionary.isSkip(s)) continue;
 
             // ִʼֶͬͬ
             // nullʾ
-            Object obj = search(res, s);
-            System.out.println("target: " + s + " : " + obj);
+            Object obj;
+            if (qaFieldIndex) {
+                if (fieldIndex == null) fieldIndex = FieldIndex.of(res);
+                obj = fieldIndex.get(s);
+            } else {
+                obj = search(res, s);
+            }
+            if (trace) tracer.trace("target: " + s + " : " + obj);
             if (obj != null) {
                 result.put(s, obj);
             }
         }
+        metrics.answers(result.size());
+        metrics.record(SearchMetrics.Stage.QA, start);
+        return result;
+    }
+
+    /**
+     * ǰtopKвʴĿֶ
+     * ڵ߳аβңÿֶȡǰĽеֵֶζҵֹͣ
+     * @param index index
+     * @param type type
+     * @param res ȫֶĽ
+     * @param keywords ķִ
+     * @param topK ǰ
+     * @return <ֶشԴ>Ŀֶε˳
+     */
+    public Map<String, Answer> getQA(String index, String type, SearchResponse res, List<String> keywords,
+                                     int topK) {
+        return getQA(index, type, res, keywords, topK, null);
+    }
+
+    /**
+     * ǰtopKвʴĿֶΣָвҵ̳߳
+     * ÿֶȡǰĽеֵʼĳʱֶζڸǰĽҵý
+     * setQAFieldIndexʱÿȽֶ
+     * @param index index
+     * @param type type
+     * @param res ȫֶĽ
+     * @param keywords ķִ
+     * @param topK ǰ
+     * @param executor вҵ̳߳أnullʾڵ߳βң
+     *                 Ҫʹִбεõ̳߳أǶײʱ̺߳ľ
+     * @return <ֶشԴ>Ŀֶε˳
+     */
+    public Map<String, Answer> getQA(String index, String type, SearchResponse res, List<String> keywords,
+                                     int topK, Executor executor) {
+        long start = System.nanoTime();
+        Map<String, Answer> result = new LinkedHashMap<>();
+        if (res == null) return result;
+
+        Dictionary dictionary = dictionaries.get(index, type);
+        boolean trace = tracer.sample();
+
+        // ȥشֶκظֶ
+        final List<String> targets = new ArrayList<>();
+        for (String s : getTargetField(dictionary, keywords, trace)) {
+            if (!dictionary.isSkip(s) && !targets.contains(s)) targets.add(s);
+        }
+        if (trace) tracer.trace("targets: " + targets);
+
+        final SearchHit[] hits = res.getHits().getHits();
+        final int n = Math.min(topK, hits.length);
+        final boolean indexed = qaFieldIndex;
+        final AtomicReferenceArray<Answer> answers = new AtomicReferenceArray<>(targets.size());
+        if (executor == null) {
+            for (int rank = 0; rank < n && !answeredBefore(answers, rank); rank++) {
+                lookup(hits[rank], rank, targets, answers, indexed);
+            }
+        } else {
+            CompletableFuture<?>[] lookups = new CompletableFuture<?>[n];
+            for (int rank = 0; rank < n; rank++) {
+                final int r = rank;
+                lookups[rank] = CompletableFuture.runAsync(() -> {
+                    if (!answeredBefore(answers, r)) lookup(hits[r], r, targets, answers, indexed);
+                }, executor);
+            }
+            CompletableFuture.allOf(lookups).join();
+        }
+
+        for (int t = 0; t < targets.size(); t++) {
+            Answer answer = answers.get(t);
+            if (trace) tracer.trace("target: " + targets.get(t) + " : " + answer);
+            if (answer != null) result.put(targets.get(t), answer);
+        }
+        metrics.answers(result.size());
+        metrics.record(SearchMetrics.Stage.QA, start);
         return result;
     }
 
+    /**
+     * һвδڸǰĽҵĿֶ
+     */
+    private void lookup(SearchHit hit, int rank, List<String> targets, AtomicReferenceArray<Answer> answers,
+                        boolean indexed) {
+        Map<String, Object> source = hit.getSource();
+        if (source == null) return;
+        FieldIndex fieldIndex = indexed ? FieldIndex.of(source) : null;
+        for (int t = 0; t < targets.size(); t++) {
+            Answer current = answers.get(t);
+            if (current != null && current.rank < rank) continue;
+            Object obj = indexed ? fieldIndex.get(targets.get(t)) : search(source, targets.get(t));
+            if (obj != null) offer(answers, t, new Answer(obj, hit.getScore(), hit.getId(), rank));
+        }
+    }
+
+    /**
+     * @return ǷĿֶζrank֮ǰĽҵ
+     */
+    private static boolean answeredBefore(AtomicReferenceArray<Answer> answers, int rank) {
+        for (int t = 0; t < answers.length(); t++) {
+            Answer answer = answers.get(t);
+            if (answer == null || answer.rank > rank) return false;
+        }
+        return true;
+    }
+
+    /**
+     * ǰĽеĻش
+     */
+    private static void offer(AtomicReferenceArray<Answer> answers, int target, Answer answer) {
+        while (true) {
+            Answer current = answers.get(target);
+            if (current != null && current.rank <= answer.rank) return;
+            if (answers.compareAndSet(target, current, answer)) return;
+        }
+    }
+
     /**
      * ԷִʽԶͬ
      * @param type type
@@ -320,31 +2051,30 @@ public class SmartSearch {
      * @return ִʼͬ
      */
     public List<String> getTargetField(String type, List<String> keywords) {
+        return getTargetField(null, type, keywords);
+    }
+
+    /**
+     * ԷִʽԶͬʣʹøindex/typeĴʵ
+     * @param index index
+     * @param type type
+     * @param keywords ķִ
+     * @return ִʼͬ
+     */
+    public List<String> getTargetField(String index, String type, List<String> keywords) {
+        return getTargetField(dictionaries.get(index, type), keywords, tracer.sample());
+    }
+
+    private List<String> getTargetField(Dictionary dictionary, List<String> keywords, boolean trace) {
         List<String> res = new ArrayList<>(keywords);
 
-        System.out.println("analyzer: " + keywords);
+        if (trace) tracer.trace("analyzer: " + keywords);
 
-        for (String keyword : keywords) {
-            if (synonyms.containsKey(keyword)) {
-                System.out.println("synonyms: " + keyword + " => " + synonyms.get(keyword));
-                res.add(synonyms.get(keyword));
-            }
-        }
-
-        // ɶԲͬtypeزͬͬ
-//        for (String keyword : keywords) {
-//            if (type.equals("type1")) {
-//                if (type1-synonyms.containsKey(keyword)) {
-//                    System.out.println("synonyms: " + keyword + " => " + type1-synonyms.get(keyword));
-//                    res.add(type1-synonyms.get(keyword));
-//                }
-//            } else if (type.equals("type2")) {
-//                if (type2-synonyms.containsKey(keyword)) {
-//                    System.out.println("synonyms: " + keyword + " => " + type2-synonyms.get(keyword));
-//                    res.add(type2-synonyms.get(keyword));
-//                }
-//            }
-//        }
+        // һɨƥ䵥ʼʵͬ
+        for (String synonym : dictionary.matchSynonyms(keywords)) {
+            if (trace) tracer.trace("synonyms: => " + synonym);
+            res.add(synonym);
+        }
 
         return res;
     }
@@ -359,17 +2089,18 @@ public class SmartSearch {
     public List<String> getTargetField(String type, List<String> keywords, Set<String> fieldSet) {
         List<String> res = new ArrayList<>();
 
-        System.out.println("analyzer: " + keywords);
+        boolean trace = tracer.sample();
+        if (trace) tracer.trace("analyzer: " + keywords);
 
         for (String keyword : keywords) {
             if (fieldSet.contains(keyword)) {
                 res.add(keyword);
             }
+        }
 
-            if (synonyms.containsKey(keyword)) {
-                System.out.println("synonyms: " + keyword + " => " + synonyms.get(keyword));
-                res.add(synonyms.get(keyword));
-            }
+        for (String synonym : dictionaries.get(null, type).matchSynonyms(keywords)) {
+            if (trace) tracer.trace("synonyms: => " + synonym);
+            res.add(synonym);
         }
         return res;
     }
@@ -435,16 +2166,8 @@ public class SmartSearch {
      */
     public void parseNestedObject(Object obj, List<String> tmp, List<List<String>> res) {
         if (obj != null) {
-            if (obj instanceof Map) {
-                parseNestedObject((Map<String, Object>) obj, tmp, res);
-            } else if (obj instanceof List){
-                List<Object> l = (List<Object>) obj;
-                Map<String, Object> map = new HashMap<>();
-                int i = 0;
-                for (Object o : l) {
-                    map.put("^" + String.valueOf(i++), o);
-                }
-                parseNestedObject(map, tmp, res);
+            if (obj instanceof Map || obj instanceof List) {
+                SourceWalker.walk(obj, tmp, leafCollector(res));
             } else {
                 List<String> l = new ArrayList<>();
                 l.add(String.valueOf(obj));
@@ -465,34 +2188,25 @@ public class SmartSearch {
      */
     public void parseNestedObject(Map<String, Object> node, List<String> tmp, List<List<String>> res) {
         if (node == null) return;
-        for (Map.Entry<String, Object> entry : node.entrySet()) {
-            tmp.add(entry.getKey());
+        SourceWalker.walk(node, tmp, leafCollector(res));
+    }
 
-            if (entry.getValue() instanceof Map) {
-                tmp.add(".");
-                parseNestedObject((Map<String, Object>) entry.getValue(), tmp, res);
-                tmp.remove(tmp.size() - 1);
-                tmp.remove(tmp.size() - 1);
-            } else if (entry.getValue() instanceof List) {
-                tmp.add(".");
-                List<Object> l = (List<Object>) entry.getValue();
-                Map<String, Object> map = new HashMap<>();
-                int i = 0;
-                for (Object o : l) {
-                    map.put("^" + String.valueOf(i++), o);
-                }
-                parseNestedObject(map, tmp, res);
-                tmp.remove(tmp.size() - 1);
-                tmp.remove(tmp.size() - 1);
-            } else {
-                tmp.add(":");
-                tmp.add(String.valueOf(entry.getValue()));
-                res.add(new ArrayList<String>(tmp));
-                tmp.remove(tmp.size() - 1);
-                tmp.remove(tmp.size() - 1);
-                tmp.remove(tmp.size() - 1);
+    /**
+     * ¼ÿҶӽڵ·ֵֻҶӽڵ㴦һ·
+     * @param res ƽĽ
+     * @return ص
+     */
+    private SourceVisitor leafCollector(final List<List<String>> res) {
+        return new SourceVisitor() {
+            @Override
+            public void leaf(List<String> path, Object value) {
+                List<String> l = new ArrayList<>(path.size() + 2);
+                l.addAll(path);
+                l.add(":");
+                l.add(String.valueOf(value));
+                res.add(l);
             }
-        }
+        };
     }
 
     /**
@@ -515,6 +2229,47 @@ public class SmartSearch {
         writeToFile(fieldSet, fileName);
     }
 
+    /**
+     * ɨindex/typeֶдı
+     * shardscrollÿҳ꼴ڴֻҳСй
+     * @param index index
+     * @param type type
+     * @param fileName ļ
+     * @param pageSize ÿshardÿҳٸ
+     * @param parallelism ͬʱscrollshard
+     * @throws ExecutionException һshard scrollʧ
+     * @throws InterruptedException ȴʱж
+     */
+    public void writeAllFields(String index, String type, String fileName, int pageSize, int parallelism)
+            throws ExecutionException, InterruptedException {
+        writeToFile(discoverFields(index, type, pageSize, parallelism), fileName);
+    }
+
+    /**
+     * ɨindex/typeռdocгֶֹ
+     * @param index index
+     * @param type type
+     * @param pageSize ÿshardÿҳٸ
+     * @param parallelism ͬʱscrollshard
+     * @return ֶ
+     * @throws ExecutionException һshard scrollʧ
+     * @throws InterruptedException ȴʱж
+     */
+    public Set<String> discoverFields(String index, String type, int pageSize, int parallelism)
+            throws ExecutionException, InterruptedException {
+        final Set<String> fieldSet = ConcurrentHashMap.newKeySet();
+        new ParallelScroll(client, index, type, null, pageSize, TimeValue.timeValueMinutes(1))
+                .run(parallelism, new ParallelScroll.PageHandler() {
+                    @Override
+                    public void onPage(SearchHit[] hits) {
+                        for (SearchHit hit : hits) {
+                            getFieldSet(hit.getSource(), fieldSet);
+                        }
+                    }
+                });
+        return fieldSet;
+    }
+
     /**
      * ֶ뼯
      * Ϊͬһtype£ÿֶβ֤ȫһ
@@ -546,23 +2301,22 @@ public class SmartSearch {
      * @param node rootڵ
      * @param set ֶ
      */
-    public void getFieldSet(Map<String, Object> node, Set<String> set) {
-        for (Map.Entry<String, Object> entry : node.entrySet()) {
-            set.add(entry.getKey());
-
-            if (entry.getValue() instanceof Map) {
-                getFieldSet((Map<String, Object>) entry.getValue(), set);
+    public void getFieldSet(Map<String, Object> node, final Set<String> set) {
+        SourceWalker.walk(node, new SourceVisitor() {
+            @Override
+            public boolean enterField(List<String> path, String name, Object value) {
+                set.add(name);
+                return true;
             }
 
-            if (entry.getValue() instanceof List) {
-                List<Object> l = (List<Object>) entry.getValue();
-                Map<String, Object> map = new HashMap<>();
-                if (l.size() <= 0) continue;
+            @Override
+            public boolean enterElement(List<String> path, int index, Object value) {
                 // skip, since list elements have the same fields.
-                map.put(String.valueOf(0), l.get(0));
-                getFieldSet(map, set);
+                if (index > 0) return false;
+                set.add("0");
+                return true;
             }
-        }
+        });
     }
 
     /**
@@ -586,6 +2340,7 @@ public class SmartSearch {
      * ҪڽʱֶΣĬǰ׺ƥ
      * ֶͨȥ׸ֵĴȫļ
      * ʵмƥ
+     * enableLocalSuggestֶJVMڲȫ
      * @param index index
      * @param fieldڽʱӵֶ
      * @param text ȫ
@@ -593,27 +2348,105 @@ public class SmartSearch {
      * @return زȫ
      */
     public List<String> getSuggest(String index, String field, String text, int size) {
-        List<String> res =  new ArrayList<>();
+        try {
+            return getSuggestAsync(index, field, text, size).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Զȫ첽汾ͬgetSuggest
+     * ֶο˱زȫʱֱJVMڲȫȺ
+     * ͬĲϲΪһ
+     * @return ȫFuture
+     */
+    public CompletableFuture<List<String>> getSuggestAsync(final String index, final String field,
+                                                           final String text, final int size) {
         if (index == null || field == null || text == null || client == null || index.length() == 0 ||
                 field.length() == 0 || text.length() == 0) {
-            return res;
+            return CompletableFuture.completedFuture((List<String>) new ArrayList<String>());
+        }
+
+        LocalSuggester suggester = localSuggesters.get(index + "/" + field);
+        if (suggester != null && suggester.isReady()) {
+            return CompletableFuture.completedFuture(suggester.suggest(text, size));
         }
 
+        return suggestFlights.execute(Arrays.<Object>asList(index, field, text, size),
+                () -> suggestRemote(index, field, text, size))
+                // ϲĵ߹Էһݿ
+                .thenApply(res -> new ArrayList<>(res));
+    }
+
+    private CompletableFuture<List<String>> suggestRemote(String index, String field, String text, int size) {
+        final CompletableFuture<List<String>> future = new CompletableFuture<>();
         CompletionSuggestionBuilder suggestBuilder = new CompletionSuggestionBuilder("completeMe");
         suggestBuilder.text(text);
         suggestBuilder.field(field);
         suggestBuilder.size(size);
         SuggestRequestBuilder suggestRequestBuilder = client.prepareSuggest(index).addSuggestion(suggestBuilder);
 
-        SuggestResponse suggestResponse = suggestRequestBuilder.execute().actionGet();
-        Iterator<? extends Suggest.Suggestion.Entry.Option> iter = suggestResponse.getSuggest().getSuggestion("completeMe").iterator().next().getOptions().iterator();
+        suggestRequestBuilder.execute(new ActionListener<SuggestResponse>() {
+            @Override
+            public void onResponse(SuggestResponse suggestResponse) {
+                List<String> res = new ArrayList<>();
+                Iterator<? extends Suggest.Suggestion.Entry.Option> iter = suggestResponse.getSuggest().getSuggestion("completeMe").iterator().next().getOptions().iterator();
+
+                while (iter.hasNext()) {
+                    Suggest.Suggestion.Entry.Option next = iter.next();
+                    res.add(next.getText().toString());
+                }
+                future.complete(res);
+            }
 
-        while (iter.hasNext()) {
-            Suggest.Suggestion.Entry.Option next = iter.next();
-            res.add(next.getText().toString());
-        }
+            @Override
+            public void onFailure(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
 
-        return res;
+    /**
+     * Զȫɨindexcompletionֶε룬JVMڽFST
+     * ֶ֮εĲȫȺFSTintervalں̨ؽ
+     * ʹElasticSearch completionֶĬһµsimpleִ
+     * @param index index
+     * @param field completionֶ
+     * @param interval ؽ
+     * @param unit ʱ䵥λ
+     * @return ȫ
+     */
+    public long enableLocalSuggest(String index, String field, long interval, TimeUnit unit)
+            throws IOException, ExecutionException, InterruptedException {
+        return enableLocalSuggest(index, field, new SimpleAnalyzer(), interval, unit);
+    }
+
+    /**
+     * Զȫָcompletionֶһµķִͬ
+     * @param analyzer Luceneִ
+     * @return ȫ
+     */
+    public long enableLocalSuggest(String index, String field, Analyzer analyzer, long interval, TimeUnit unit)
+            throws IOException, ExecutionException, InterruptedException {
+        LocalSuggester suggester = new LocalSuggester(client, index, field, analyzer);
+        long count = suggester.rebuild(4);
+        suggester.startRefresh(interval, unit, 4);
+        LocalSuggester old = localSuggesters.put(index + "/" + field, suggester);
+        if (old != null) old.stopRefresh();
+        return count;
+    }
+
+    /**
+     * رձԶȫֶ֮εĲȫȺ
+     * @param index index
+     * @param field completionֶ
+     */
+    public void disableLocalSuggest(String index, String field) {
+        LocalSuggester suggester = localSuggesters.remove(index + "/" + field);
+        if (suggester != null) suggester.stopRefresh();
     }
 
     /**
@@ -695,6 +2528,95 @@ public class SmartSearch {
             }
         }
 
-        bulkProcessor.close();
+        // closeȴѷ󣬵ȫɺ󻺴ʧЧʧЧֻ浽
+        try {
+            bulkProcessor.awaitClose(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            invalidateResultCache(index, type);
+        }
+    }
+
+    /**
+     * ĹСѹޡԲ
+     * @return BulkIngesterĹ
+     */
+    public BulkIngester.Builder newBulkIngester() {
+        return new BulkIngester.Builder(client);
+    }
+
+    /**
+     * ݣȺܾdocָ˱ԣδɵdocʱȡ
+     * @param builder ãnewBulkIngester
+     * @param iterable ݽṹÿmapһdoc
+     * @param index index
+     * @param type type
+     * @param interval ÿٸͨlog4jһͳ
+     * @return ͳƣɹʧӳٵİٷλ
+     * @throws InterruptedException ȴʱж
+     */
+    public IngestStats bulkLoad(BulkIngester.Builder builder, Iterable<Map<String, Object>> iterable,
+                                String index, String type, int interval) throws InterruptedException {
+        BulkIngester ingester = builder.build();
+        try {
+            int k = 0;
+            for (Map<String, Object> map : iterable) {
+                ingester.add(new IndexRequest(index, type, String.valueOf(++k)).source(map));
+                if (interval > 0 && k % interval == 0) {
+                    LOGGER.info(k + " " + ingester.stats());
+                }
+            }
+        } finally {
+            // docн󻺴ʧЧ
+            ingester.close();
+            invalidateResultCache(index, type);
+        }
+        return ingester.stats();
+    }
+
+    /**
+     * NDJSONļ룬ļڴӳ䷽ʽȡÿ¼ԭʼֱֽΪdoc
+     * ʡȥMapлJSONḶ́ļзֺ̲߳н
+     * @param builder ãnewBulkIngester
+     * @param fileName NDJSONļÿһJSONҲһJSON飨У
+     * @param index index
+     * @param type type
+     * @param idField Ϊdoc idĶֶnullʾElasticSearchid
+     * @param parallelism н߳
+     * @return ͳ
+     * @throws IOException ļʧ
+     */
+    public IngestStats bulkLoadFile(BulkIngester.Builder builder, String fileName, final String index,
+                                    final String type, String idField, int parallelism) throws IOException {
+        final BulkIngester ingester = builder.build();
+        try {
+            new NdjsonFile(fileName, idField).read(parallelism, new NdjsonFile.RecordHandler() {
+                @Override
+                public void onRecord(byte[] source, String id) throws Exception {
+                    ingester.add(new IndexRequest(index, type, id).source(source));
+                }
+            });
+        } finally {
+            // docн󻺴ʧЧ
+            ingester.close();
+            invalidateResultCache(index, type);
+        }
+        return ingester.stats();
+    }
+
+    /**
+     * ݻʵѸ£index/type»ʧЧ
+     * @param index indexnullʾindex
+     * @param type typenullʾindextype
+     */
+    private void invalidateResultCache(String index, String type) {
+        ResultCache cache = resultCache;
+        if (cache == null) return;
+        if (index == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(index, type);
+        }
     }
 }
@@ -0,0 +1,376 @@
+package com.ydy.api.es;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunkAggregator;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * NettyǶʽHTTPJSONṩʴԶȫӿ
+ * NettyIO߳Ͻ첽ڻصдأȴȺʱռ߳
+ * ͬʱޣʱ503ʱ޵󷵻504
+ * ͬһˮ߷ĶӦ˳д
+ * <pre>
+ * GET /qa?index=&amp;type=&amp;text=&amp;size=10&amp;from=0&amp;explain=false
+ * GET /suggest?index=&amp;field=&amp;text=&amp;size=10
+ * GET /search?index=&amp;type=&amp;field=_all&amp;text=&amp;size=10&amp;from=0
+ * </pre>
+ */
+public class SmartSearchServer {
+    private final SmartSearch smartSearch;
+    private final int port;
+    private final int workerThreads;
+    private final int qaThreads;
+    private final Semaphore permits;
+    private final int maxConcurrentRequests;
+    private final long requestTimeoutMillis;
+
+    // ִʴ̳߳أIO߳ϱstartʱ
+    private volatile ExecutorService qaExecutor;
+
+    // ʱ޵ļʱstartʱ
+    private volatile Timer timer;
+
+    private final ChannelGroup channels = new DefaultChannelGroup("smartsearch-http");
+    private ServerBootstrap bootstrap;
+
+    /**
+     * @param smartSearch SmartSearchʵ
+     * @param port ˿
+     * @param workerThreads NettyIO߳
+     * @param qaThreads ִʴ߳
+     * @param maxConcurrentRequests ͬʱ
+     */
+    public SmartSearchServer(SmartSearch smartSearch, int port, int workerThreads, int qaThreads,
+                             int maxConcurrentRequests) {
+        this(smartSearch, port, workerThreads, qaThreads, maxConcurrentRequests, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param smartSearch SmartSearchʵ
+     * @param port ˿
+     * @param workerThreads NettyIO߳
+     * @param qaThreads ִʴ߳
+     * @param maxConcurrentRequests ͬʱ
+     * @param requestTimeout ÿĴʱޣʱ504ͷ
+     * @param unit ʱ䵥λ
+     */
+    public SmartSearchServer(SmartSearch smartSearch, int port, int workerThreads, int qaThreads,
+                             int maxConcurrentRequests, long requestTimeout, TimeUnit unit) {
+        this.smartSearch = smartSearch;
+        this.port = port;
+        this.workerThreads = workerThreads;
+        this.qaThreads = qaThreads;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.permits = new Semaphore(maxConcurrentRequests);
+        this.requestTimeoutMillis = unit.toMillis(requestTimeout);
+    }
+
+    /**
+     * ʼ
+     */
+    public synchronized void start() {
+        if (bootstrap != null) return;
+        qaExecutor = Executors.newFixedThreadPool(qaThreads);
+        timer = new HashedWheelTimer();
+        bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(
+                Executors.newCachedThreadPool(), Executors.newCachedThreadPool(), workerThreads));
+        bootstrap.setOption("child.tcpNoDelay", true);
+        bootstrap.setOption("child.keepAlive", true);
+        bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() {
+                ChannelPipeline pipeline = Channels.pipeline();
+                pipeline.addLast("decoder", new HttpRequestDecoder());
+                pipeline.addLast("aggregator", new HttpChunkAggregator(64 * 1024));
+                pipeline.addLast("encoder", new HttpResponseEncoder());
+                pipeline.addLast("handler", new Handler());
+                return pipeline;
+            }
+        });
+        channels.add(bootstrap.bind(new InetSocketAddress(port)));
+    }
+
+    /**
+     * ֹͣرӣرSmartSearchʵ
+     */
+    public synchronized void close() {
+        if (bootstrap == null) return;
+        channels.close().awaitUninterruptibly();
+        bootstrap.releaseExternalResources();
+        bootstrap = null;
+        timer.stop();
+        qaExecutor.shutdownNow();
+    }
+
+    /**
+     * @return ڴ
+     */
+    public int inflight() {
+        return maxConcurrentRequests - permits.availablePermits();
+    }
+
+    /**
+     * ÿһʵ˳дӦ
+     */
+    private class Handler extends SimpleChannelUpstreamHandler {
+        // һ
+        private long received;
+
+        // һӦдص
+        private long written;
+
+        // ɡȴǰӦдصӦ <ţӦ>
+        private final Map<Long, Runnable> completed = new HashMap<>();
+
+        @Override
+        public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) {
+            channels.add(e.getChannel());
+        }
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+            final HttpRequest request = (HttpRequest) e.getMessage();
+            final Channel channel = e.getChannel();
+            final long sequence;
+            synchronized (this) {
+                sequence = received++;
+            }
+
+            if (!permits.tryAcquire()) {
+                respond(sequence, channel, request, HttpResponseStatus.SERVICE_UNAVAILABLE, error("too many requests"));
+                return;
+            }
+
+            // ֻһΣʱȵЧֻͷһ
+            final CompletableFuture<BytesReference> response = new CompletableFuture<>();
+            final Timeout timeout = timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout t) {
+                    response.completeExceptionally(new TimeoutException("request timed out"));
+                }
+            }, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+
+            try {
+                dispatch(new QueryStringDecoder(request.getUri())).whenComplete((body, throwable) -> {
+                    if (throwable != null) {
+                        response.completeExceptionally(throwable);
+                    } else {
+                        response.complete(body);
+                    }
+                });
+            } catch (Exception ex) {
+                response.completeExceptionally(ex);
+            }
+
+            response.whenComplete((body, throwable) -> {
+                timeout.cancel();
+                permits.release();
+                if (throwable == null) {
+                    respond(sequence, channel, request, HttpResponseStatus.OK, body);
+                    return;
+                }
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ?
+                        throwable.getCause() : throwable;
+                HttpResponseStatus status = cause instanceof IllegalArgumentException ?
+                        HttpResponseStatus.BAD_REQUEST : cause instanceof NotFoundException ?
+                        HttpResponseStatus.NOT_FOUND : cause instanceof TimeoutException ?
+                        HttpResponseStatus.GATEWAY_TIMEOUT : HttpResponseStatus.INTERNAL_SERVER_ERROR;
+                respond(sequence, channel, request, status, error(String.valueOf(cause.getMessage())));
+            });
+        }
+
+        /**
+         * ֵʱдأݴ棬дغдɵӦ
+         */
+        private synchronized void respond(long sequence, final Channel channel, final HttpRequest request,
+                                          final HttpResponseStatus status, final BytesReference body) {
+            completed.put(sequence, () -> write(channel, request, status, body));
+            Runnable next;
+            while ((next = completed.remove(written)) != null) {
+                next.run();
+                written++;
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+            e.getChannel().close();
+        }
+    }
+
+    /**
+     * ·ַ󣬷ӦFuture
+     */
+    private CompletableFuture<BytesReference> dispatch(QueryStringDecoder decoder) {
+        Map<String, List<String>> params = decoder.getParameters();
+        switch (decoder.getPath()) {
+            case "/qa":
+                return smartSearch.searchAllWithQAAsync(required(params, "index"), required(params, "type"),
+                        required(params, "text"), intParam(params, "size", 10), intParam(params, "from", 0),
+                        Boolean.parseBoolean(param(params, "explain", "false")), qaExecutor)
+                        .thenApply(result -> toJson(result));
+            case "/suggest":
+                return smartSearch.getSuggestAsync(required(params, "index"), required(params, "field"),
+                        required(params, "text"), intParam(params, "size", 10))
+                        .thenApply(suggestions -> toJson(suggestions));
+            case "/search":
+                final String index = required(params, "index");
+                final String type = required(params, "type");
+                final String field = param(params, "field", "_all");
+                final int size = intParam(params, "size", 10);
+                final int from = intParam(params, "from", 0);
+                return smartSearch.analyzeAsync(index, "ik", required(params, "text"))
+                        .thenCompose(keywords -> smartSearch.searchAsync(index, type, field, null, keywords, size,
+                                from, null, null, null, false))
+                        .thenApply(res -> toJson(res));
+            default:
+                throw new NotFoundException("no handler for " + decoder.getPath());
+        }
+    }
+
+    private static BytesReference toJson(SmartSearch.SearchResult result) {
+        try {
+            XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+            builder.field("highlights", result.highlights);
+            builder.field("answers", result.answers);
+            if (result.response != null) {
+                builder.startObject("response");
+                result.response.toXContent(builder, ToXContent.EMPTY_PARAMS);
+                builder.endObject();
+            }
+            return builder.endObject().bytes();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static BytesReference toJson(List<String> suggestions) {
+        try {
+            return XContentFactory.jsonBuilder().startObject().field("suggestions", suggestions).endObject().bytes();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static BytesReference toJson(SearchResponse res) {
+        try {
+            XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+            if (res != null) res.toXContent(builder, ToXContent.EMPTY_PARAMS);
+            return builder.endObject().bytes();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static BytesReference error(String message) {
+        try {
+            return XContentFactory.jsonBuilder().startObject().field("error", message).endObject().bytes();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * дӦkeep-aliveӱִ򿪣дر
+     */
+    private static void write(Channel channel, HttpRequest request, HttpResponseStatus status, BytesReference body) {
+        boolean keepAlive = HttpHeaders.isKeepAlive(request);
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+        response.headers().set(HttpHeaders.Names.CONTENT_TYPE, "application/json; charset=UTF-8");
+        response.setContent(body.toChannelBuffer());
+        HttpHeaders.setContentLength(response, body.length());
+        HttpHeaders.setKeepAlive(response, keepAlive);
+        ChannelFuture future = channel.write(response);
+        if (!keepAlive) future.addListener(ChannelFutureListener.CLOSE);
+    }
+
+    private static String param(Map<String, List<String>> params, String name, String defaultValue) {
+        List<String> values = params.get(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+
+    private static String required(Map<String, List<String>> params, String name) {
+        String value = param(params, name, null);
+        if (value == null || value.length() == 0) {
+            throw new IllegalArgumentException("missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int intParam(Map<String, List<String>> params, String name, int defaultValue) {
+        String value = param(params, name, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid parameter: " + name + "=" + value);
+        }
+    }
+
+    private static class NotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 
+     * ElasticSearchڵַԶŷָ Ⱥ HTTP˿
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("usage: SmartSearchServer host[:port][,host[:port]...] clusterName httpPort");
+            return;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        SmartSearch smartSearch = new SmartSearch(Arrays.asList(args[0].split(",")), args[1], false);
+        new SmartSearchServer(smartSearch, Integer.parseInt(args[2]), cores, cores, 1024).start();
+    }
+}
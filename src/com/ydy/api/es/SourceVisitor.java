@@ -0,0 +1,41 @@
+package com.ydy.api.es;
+
+import java.util.List;
+
+/**
+ * Ƕ׵Map/ListʱĻص
+ * pathΪӸǰڵ·ʽparseNestedObjectһ£
+ * ֶ"."棬ԪصΪ"^±"
+ * pathSourceWalkerõĻ壬ֻڻصЧҪʱп
+ */
+public interface SourceVisitor {
+    /**
+     * MapеһֶΣpathһԪΪֶ
+     * @param path ·
+     * @param name ֶ
+     * @param value ֶεֵ
+     * @return ǷֶεǶ
+     */
+    default boolean enterField(List<String> path, String name, Object value) {
+        return true;
+    }
+
+    /**
+     * ListеһԪأpathһԪΪ"^±"
+     * @param path ·
+     * @param index ±
+     * @param value Ԫصֵ
+     * @return ǷԪصǶ
+     */
+    default boolean enterElement(List<String> path, int index, Object value) {
+        return true;
+    }
+
+    /**
+     * һҶӽڵ㣬MapListֵ
+     * @param path ·
+     * @param value Ҷӽڵֵ
+     */
+    default void leaf(List<String> path, Object value) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.ydy.api.es;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ԭرǶ׵Map/List(·ֵ)صSourceVisitor
+ * ·ʹͬһջв·ҲListתMap
+ */
+public final class SourceWalker {
+    // Ԫص֣Ԥɱظַ
+    private static final String[] ELEMENT_NAMES = new String[64];
+
+    static {
+        for (int i = 0; i < ELEMENT_NAMES.length; i++) {
+            ELEMENT_NAMES[i] = "^" + i;
+        }
+    }
+
+    private SourceWalker() {
+    }
+
+    /**
+     * һ
+     * @param obj MapListҶӽڵֵ
+     * @param visitor ص
+     */
+    public static void walk(Object obj, SourceVisitor visitor) {
+        walk(obj, new ArrayList<String>(), visitor);
+    }
+
+    /**
+     * һʹõṩ·
+     * @param obj MapListҶӽڵֵ
+     * @param path ·壬ָԭ״
+     * @param visitor ص
+     */
+    @SuppressWarnings("unchecked")
+    public static void walk(Object obj, List<String> path, SourceVisitor visitor) {
+        if (obj instanceof Map) {
+            walkMap((Map<String, Object>) obj, path, visitor);
+        } else if (obj instanceof List) {
+            walkList((List<Object>) obj, path, visitor);
+        } else {
+            visitor.leaf(path, obj);
+        }
+    }
+
+    private static void walkMap(Map<String, Object> node, List<String> path, SourceVisitor visitor) {
+        for (Map.Entry<String, Object> entry : node.entrySet()) {
+            path.add(entry.getKey());
+            if (visitor.enterField(path, entry.getKey(), entry.getValue())) {
+                walkValue(entry.getValue(), path, visitor);
+            }
+            path.remove(path.size() - 1);
+        }
+    }
+
+    private static void walkList(List<Object> l, List<String> path, SourceVisitor visitor) {
+        int i = 0;
+        for (Object o : l) {
+            path.add(elementName(i));
+            if (visitor.enterElement(path, i, o)) {
+                walkValue(o, path, visitor);
+            }
+            path.remove(path.size() - 1);
+            i++;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void walkValue(Object value, List<String> path, SourceVisitor visitor) {
+        if (value instanceof Map) {
+            path.add(".");
+            walkMap((Map<String, Object>) value, path, visitor);
+            path.remove(path.size() - 1);
+        } else if (value instanceof List) {
+            path.add(".");
+            walkList((List<Object>) value, path, visitor);
+            path.remove(path.size() - 1);
+        } else {
+            visitor.leaf(path, value);
+        }
+    }
+
+    private static String elementName(int i) {
+        return i < ELEMENT_NAMES.length ? ELEMENT_NAMES[i] : "^" + i;
+    }
+}
@@ -0,0 +1,137 @@
+package com.ydy.api.es;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * ͬƥ䣬ͬʴʵԷִΪַAho-CorasickԶ
+ * Էִʽֻɨһ鼴ҳͬʶʱִȣʵС޹
+ * ֻɱ̹߳
+ */
+public class SynonymMatcher {
+    public static final SynonymMatcher EMPTY = new Builder().build();
+
+    private final Node root;
+    private final int size;
+
+    private SynonymMatcher(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * ڷִʽƥͬ
+     * жĽλͬһλȳ
+     * @param keywords ķִ
+     * @return еͬʶӦֶ
+     */
+    public List<String> match(List<String> keywords) {
+        if (size == 0) return Collections.emptyList();
+        List<String> res = new ArrayList<>();
+        Node state = root;
+        for (String keyword : keywords) {
+            Node next = state.children.get(keyword);
+            while (next == null && state != root) {
+                state = state.fail;
+                next = state.children.get(keyword);
+            }
+            state = next == null ? root : next;
+
+            for (Node out = state.output != null ? state : state.outputLink; out != null; out = out.outputLink) {
+                res.add(out.output);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return ʵеĶ
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * ԶĹ̰߳ȫ
+     */
+    public static class Builder {
+        private final Node root = new Node();
+        private int size;
+
+        /**
+         * һͬʶ
+         * @param tokens ͬʷִʺĶ
+         * @param canonical Ӧֶ
+         * @return this
+         */
+        public Builder add(List<String> tokens, String canonical) {
+            if (tokens == null || tokens.isEmpty() || canonical == null) return this;
+            Node node = root;
+            for (String token : tokens) {
+                Node child = node.children.get(token);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(token, child);
+                }
+                node = child;
+            }
+            if (node.output == null) size++;
+            // Mapһ£ظĶԺΪ׼
+            node.output = canonical;
+            return this;
+        }
+
+        /**
+         * һʵͬ
+         * @param token ͬ
+         * @param canonical Ӧֶ
+         * @return this
+         */
+        public Builder add(String token, String canonical) {
+            return add(Collections.singletonList(token), canonical);
+        }
+
+        /**
+         * ʧָ룬Զ֮󲻿ʹøBuilder
+         * @return Զ
+         */
+        public SynonymMatcher build() {
+            // BFSʧָָĿƥ׺
+            Queue<Node> queue = new ArrayDeque<>();
+            root.fail = root;
+            for (Node child : root.children.values()) {
+                child.fail = root;
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                for (Map.Entry<String, Node> entry : node.children.entrySet()) {
+                    Node child = entry.getValue();
+                    Node fail = node.fail;
+                    Node target = fail.children.get(entry.getKey());
+                    while (target == null && fail != root) {
+                        fail = fail.fail;
+                        target = fail.children.get(entry.getKey());
+                    }
+                    child.fail = target == null ? root : target;
+                    // ֻĽڵ㣬ƥʱʧָ
+                    child.outputLink = child.fail.output != null ? child.fail : child.fail.outputLink;
+                    queue.add(child);
+                }
+            }
+            return new SynonymMatcher(root, size);
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>(4);
+        private Node fail;
+        private Node outputLink;
+        private String output;
+    }
+}
@@ -0,0 +1,78 @@
+package com.ydy.api.es;
+
+import org.apache.log4j.AsyncAppender;
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ٣ͨlog4j첽
+ * ĬϹرգsample()жϣδʱƴַκζ
+ * <pre>
+ * boolean trace = tracer.sample();
+ * if (trace) tracer.trace("targets: " + targets);
+ * </pre>
+ */
+public class Tracer {
+    private final Logger logger;
+
+    // 0ʾرգ1ʾȫ
+    private volatile double sampleRate;
+
+    /**
+     * @param name log4jlogger
+     */
+    public Tracer(String name) {
+        this.logger = Logger.getLogger(name);
+    }
+
+    /**
+     * ò
+     * ϢΪDEBUGλúͼlog4j.properties
+     * log4jȫδãloggerrootûappenderʱԶһ첽̨appender
+     * ֻ߳¼Уʱȴ
+     * @param rate 01֮䣬0ʾر
+     */
+    public synchronized void setSampleRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("sample rate must be between 0 and 1: " + rate);
+        }
+        if (rate > 0 && !logger.getAllAppenders().hasMoreElements()
+                && !LogManager.getRootLogger().getAllAppenders().hasMoreElements()) {
+            AsyncAppender async = new AsyncAppender();
+            async.setName(logger.getName());
+            async.setBlocking(false);
+            async.addAppender(new ConsoleAppender(new PatternLayout("%d{ISO8601} [%t] %m%n")));
+            logger.addAppender(async);
+        }
+        sampleRate = rate;
+    }
+
+    /**
+     * @return ǰĲ
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Ƿ٣һֻһΣ֮traceԽΪ
+     * @return Ƿ
+     */
+    public boolean sample() {
+        double rate = sampleRate;
+        if (rate <= 0) return false;
+        return rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    /**
+     * һϢֻsample()trueʱ
+     * @param message Ϣ
+     */
+    public void trace(String message) {
+        logger.debug(message);
+    }
+}